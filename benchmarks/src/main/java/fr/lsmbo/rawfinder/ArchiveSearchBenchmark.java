@@ -0,0 +1,71 @@
+package fr.lsmbo.rawfinder;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Search of a single raw file in the archives, and search of the raw data directory containing a file
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ArchiveSearchBenchmark {
+
+    private DataParser parser;
+    private FileInfo[] files;
+    private String[] parentRawNames;
+    private int position = 0;
+
+    @Setup(Level.Trial)
+    public void listFiles(GeneratedTree tree) throws IOException {
+        // the parser is not started, only its archive cache is used
+        parser = new DataParser(Global.RAW_DATA_DIRECTORY);
+        try (Stream<Path> paths = Files.walk(Global.RAW_DATA_DIRECTORY.toPath())) {
+            List<FileInfo> list = paths.filter(Files::isRegularFile).map(path -> {
+                try {
+                    return FileInfo.read(path.toFile());
+                } catch (IOException ioe) {
+                    throw new IllegalStateException(ioe);
+                }
+            }).collect(Collectors.toList());
+            files = list.toArray(new FileInfo[0]);
+        }
+        parentRawNames = new String[files.length];
+        for(int i = 0; i < files.length; i++) parentRawNames[i] = Global.getRawParentName(files[i].getFile().getParentFile());
+    }
+
+    private FileInfo next() {
+        FileInfo file = files[position];
+        position = (position + 1) % files.length;
+        return file;
+    }
+
+    @Benchmark
+    public FileInfo findArchive() {
+        return parser.findArchive(next());
+    }
+
+    @Benchmark
+    public String getRawParentName() {
+        return Global.getRawParentName(next().getFile());
+    }
+
+    /**
+     * Same search when the raw data directory containing the parent directory is already known, as the scan does
+     */
+    @Benchmark
+    public String getRawParentNameFromParent() {
+        int index = position;
+        return Global.getRawParentName(next().getName(), parentRawNames[index]);
+    }
+}
@@ -0,0 +1,71 @@
+package fr.lsmbo.rawfinder;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing of a wide directory with its attributes, with the local storage (NIO, one call per item)
+ * and with the native storage (attributes returned with the listing), as the scan lists the data directories.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DirectoryListingBenchmark {
+
+    @Param({"1000", "10000"})
+    public int width;
+
+    @Param({"local", "native"})
+    public String backend;
+
+    private File directory;
+    private Storage storage;
+    private boolean isFallback;
+
+    /**
+     * Reported by JMH with the results: listings of the native backend done by the local storage instead, because the
+     * native storage is not available on this system (both measures are then the same)
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Fallbacks {
+        public long localFallbacks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            localFallbacks = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void createDirectory() throws IOException {
+        storage = backend.equals("native") ? NativeStorage.getInstance() : LocalStorage.INSTANCE;
+        isFallback = backend.equals("native") && storage == LocalStorage.INSTANCE;
+        directory = Files.createTempDirectory("rawfinder-listing").toFile();
+        byte[] content = new byte[16];
+        for(int i = 0; i < width; i++) Files.write(new File(directory, "file" + i + ".bin").toPath(), content);
+    }
+
+    @Benchmark
+    public long list(Fallbacks fallbacks) throws IOException {
+        if(isFallback) fallbacks.localFallbacks++;
+        long nbBytes = 0;
+        try (DirectoryStream<FileInfo> stream = storage.list(directory)) {
+            for(FileInfo item : stream) nbBytes += item.getSize() + item.getCreationTime() + item.getLastModifiedTime();
+        }
+        return nbBytes;
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        TreeGenerator.delete(directory);
+    }
+}
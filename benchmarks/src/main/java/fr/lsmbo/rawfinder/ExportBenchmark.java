@@ -0,0 +1,43 @@
+package fr.lsmbo.rawfinder;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of the result of a scan of the generated tree, in each report format
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+    @Param({"XLSX", "CSV", "JSONL", "BINARY"})
+    public ExportFormat format;
+
+    private DataParser parser;
+    private File outputFile;
+
+    @Setup(Level.Trial)
+    public void scan(GeneratedTree tree) throws InterruptedException {
+        parser = new DataParser(Global.RAW_DATA_DIRECTORY);
+        parser.start();
+        outputFile = new File(Global.REPORTS_DIRECTORY, format.getDefaultFileName());
+    }
+
+    @Benchmark
+    public File export() throws Throwable {
+        if(format == ExportFormat.XLSX) {
+            new Export(parser).start(outputFile);
+        } else {
+            try (StreamingExport export = new StreamingExport(format, outputFile)) {
+                export.write(parser);
+            }
+        }
+        return outputFile;
+    }
+}
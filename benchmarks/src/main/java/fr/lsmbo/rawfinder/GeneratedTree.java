@@ -0,0 +1,55 @@
+package fr.lsmbo.rawfinder;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Synthetic tree shared by all the iterations of a benchmark, generated in a temporary directory
+ * and used as the data and archive directories of RawFinder.
+ */
+@State(Scope.Benchmark)
+public class GeneratedTree {
+
+    @Param({"true", "false"})
+    public boolean folderLike;
+
+    @Param({"100"})
+    public int rawDataPerProject;
+
+    @Param({"20"})
+    public int filesPerRawData;
+
+    @Param({"0.1"})
+    public double missingRatio;
+
+    @Param({"0.05"})
+    public double wrongSizeRatio;
+
+    // a single thread gives the reference of a sequential scan
+    @Param({"1", "4"})
+    public int threads;
+
+    public TreeGenerator generator;
+    private File directory;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        directory = Files.createTempDirectory("rawfinder-benchmark").toFile();
+        generator = new TreeGenerator();
+        generator.setFolderLike(folderLike);
+        generator.setNbRawDataPerProject(rawDataPerProject);
+        generator.setNbFilesPerRawData(filesPerRawData);
+        generator.setMissingRatio(missingRatio);
+        generator.setWrongSizeRatio(wrongSizeRatio);
+        generator.generate(directory);
+        generator.applySettings(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        TreeGenerator.delete(directory);
+    }
+}
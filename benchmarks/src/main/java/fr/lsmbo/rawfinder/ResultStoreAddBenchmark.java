@@ -0,0 +1,63 @@
+package fr.lsmbo.rawfinder;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows added to the results by several threads at once, as the probe threads do. The time is the one taken by each
+ * thread to add its 100000 rows, to compare with ArchiveSearchBenchmark.findArchive which comes before each add
+ * and with the same number of threads: java -jar target/benchmarks.jar ResultStoreAddBenchmark -t 4
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ResultStoreAddBenchmark {
+
+    private static final int ROWS_PER_THREAD = 100000;
+    private static final int FILES_PER_DIRECTORY = 20;
+    private static final File RAW_DATA_DIRECTORY = new File("/data/raw").getAbsoluteFile();
+    private static final File ARCHIVE_DIRECTORY = new File("/data/archives").getAbsoluteFile();
+
+    @State(Scope.Benchmark)
+    public static class Results {
+        ResultStore results;
+
+        @Setup(Level.Iteration)
+        public void create() {
+            results = new ResultStore(RAW_DATA_DIRECTORY, ARCHIVE_DIRECTORY);
+        }
+    }
+
+    /**
+     * Files of each thread, in their own directories, created beforehand so only the add is measured
+     */
+    @State(Scope.Thread)
+    public static class Files {
+        FileInfo[] files = new FileInfo[ROWS_PER_THREAD];
+        FileInfo[] archives = new FileInfo[ROWS_PER_THREAD];
+        RawData[] rawData = new RawData[ROWS_PER_THREAD];
+
+        @Setup(Level.Trial)
+        public void create(ThreadParams thread) {
+            File archiveMonthDirectory = new File(ARCHIVE_DIRECTORY, "2020/septembre");
+            for(int row = 0; row < ROWS_PER_THREAD; row++) {
+                String path = "instrument" + thread.getThreadIndex() + "/project" + (row / FILES_PER_DIRECTORY) + "/Q" + row + ".raw";
+                files[row] = new FileInfo(new File(RAW_DATA_DIRECTORY, path), false, 1000, 1600000000000L, 1600000001000L);
+                archives[row] = row % 10 == 0 ? null : new FileInfo(new File(archiveMonthDirectory, path), false, 1000, 1600000002000L, 1600000003000L);
+                rawData[row] = new RawData(files[row].getName());
+            }
+        }
+    }
+
+    @Benchmark
+    public int add(Results results, Files files) {
+        int row = 0;
+        for(int i = 0; i < ROWS_PER_THREAD; i++) row = results.results.add(files.files[i], files.archives[i], files.rawData[i]);
+        return row;
+    }
+}
@@ -0,0 +1,50 @@
+package fr.lsmbo.rawfinder;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting of the rows of a large scan result before an export, the results are filled in memory without any file.
+ * The memory allocated by a sort is given by the GC profiler (gc.alloc.rate.norm, in bytes per sort):
+ * java -jar target/benchmarks.jar ResultStoreBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultStoreBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"20"})
+    public int filesPerDirectory;
+
+    private ResultStore results;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        File rawDataDirectory = new File("/data/raw").getAbsoluteFile();
+        File archiveMonthDirectory = new File("/data/archives/2020/septembre").getAbsoluteFile();
+        results = new ResultStore(rawDataDirectory, archiveMonthDirectory.getParentFile().getParentFile());
+        // added in a different order than the sorted one, as the scan threads would do
+        for(int row = 0; row < rows; row++) {
+            int nbDirectories = Math.max(1, rows / filesPerDirectory);
+            int directory = (int) ((row * 7919L) % nbDirectories);
+            String path = "project" + (directory % 10) + "/TP" + directory + ".d/data" + (row / nbDirectories) + ".bin";
+            FileInfo file = new FileInfo(new File(rawDataDirectory, path), false, 1000, 1600000000000L, 1600000001000L);
+            FileInfo archive = row % 10 == 0 ? null : new FileInfo(new File(archiveMonthDirectory, path), false, 1000, 1600000002000L, 1600000003000L);
+            results.add(file, archive, new RawData("TP" + directory + ".d"));
+        }
+        results.complete();
+    }
+
+    @Benchmark
+    public int[] getSortedRows() {
+        return results.getSortedRows();
+    }
+}
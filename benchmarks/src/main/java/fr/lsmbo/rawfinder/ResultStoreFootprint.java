@@ -0,0 +1,112 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap retained per scanned file by the results of a file-like scan, with the ResultStore and with the maps keyed
+ * by File that it replaced (DataParser before the columnar store: data, attributes, raw file names and raw data).
+ * JMH does not measure retained memory, so this is a plain program, run in its own JVM for each layout:
+ * java -Xmx4g -cp target/benchmarks.jar fr.lsmbo.rawfinder.ResultStoreFootprint store|maps [rows]
+ */
+public class ResultStoreFootprint {
+
+    private static final File RAW_DATA_DIRECTORY = new File("/data/raw").getAbsoluteFile();
+    private static final File ARCHIVE_DIRECTORY = new File("/data/archives").getAbsoluteFile();
+    private static final File ARCHIVE_MONTH_DIRECTORY = new File(ARCHIVE_DIRECTORY, "2020/septembre");
+    private static final int FILES_PER_DIRECTORY = 20;
+
+    /**
+     * Raw data as it was before the columnar store, with boxed values
+     */
+    private static class BoxedRawData {
+        final String name;
+        Double size = 0d;
+        Date date = null;
+        Integer nbFilesArchived = 0;
+        Integer nbFilesTotal = 0;
+        Integer nbFilesCorrupted = 0;
+
+        BoxedRawData(String _name) {
+            name = _name;
+        }
+
+        synchronized void addFile(FileInfo file, boolean isArchived) {
+            size += file.getSize();
+            if(isArchived) nbFilesArchived += 1;
+            nbFilesTotal += 1;
+            if(date == null || file.getCreationTime() < date.getTime()) date = new Date(file.getCreationTime());
+        }
+    }
+
+    /**
+     * The maps of DataParser before the columnar store
+     */
+    private static class Maps {
+        final Map<File, File> data = Collections.synchronizedMap(new HashMap<>());
+        final Map<String, BoxedRawData> rawData = new ConcurrentHashMap<>();
+        final Map<File, FileInfo> attributes = new ConcurrentHashMap<>();
+        final Map<File, String> rawFileNames = new ConcurrentHashMap<>();
+
+        void add(FileInfo file, FileInfo archive, String rawFileName) {
+            rawData.computeIfAbsent(rawFileName, BoxedRawData::new).addFile(file, archive != null);
+            data.put(file.getFile(), archive == null ? null : archive.getFile());
+            attributes.put(file.getFile(), file);
+            if(archive != null) attributes.put(archive.getFile(), archive);
+            rawFileNames.put(file.getFile(), rawFileName);
+        }
+    }
+
+    /**
+     * The results as kept now
+     */
+    private static class Store {
+        final ResultStore results = new ResultStore(RAW_DATA_DIRECTORY, ARCHIVE_DIRECTORY);
+        final Map<String, RawData> rawData = new ConcurrentHashMap<>();
+
+        void add(FileInfo file, FileInfo archive, String rawFileName) {
+            RawData currentRawData = rawData.computeIfAbsent(rawFileName, RawData::new);
+            currentRawData.addFile(file, archive != null);
+            results.add(file, archive, currentRawData);
+        }
+    }
+
+    public static void main(String[] args) {
+        boolean isStore = args.length == 0 || args[0].equals("store");
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        long before = getUsedHeap();
+        Store store = isStore ? new Store() : null;
+        Maps maps = isStore ? null : new Maps();
+        int nbDirectories = Math.max(1, rows / FILES_PER_DIRECTORY);
+        for(int row = 0; row < rows; row++) {
+            // each path is a new string, as when it is read from the file system
+            int directory = row % nbDirectories;
+            String path = "instrument" + (directory % 10) + "/project" + directory + "/Q" + row + ".raw";
+            FileInfo file = new FileInfo(new File(RAW_DATA_DIRECTORY, path), false, 1000000, 1600000000000L + row, 1600000001000L + row);
+            FileInfo archive = row % 10 == 0 ? null : new FileInfo(new File(ARCHIVE_MONTH_DIRECTORY, path), false, 1000000, 1600000002000L + row, 1600000003000L + row);
+            // file-like raw data, one raw data per file
+            String rawFileName = file.getName().substring(0, file.getName().length() - 4);
+            if(isStore) store.add(file, archive, rawFileName);
+            else maps.add(file, archive, rawFileName);
+        }
+        if(isStore) store.results.complete();
+        long retained = getUsedHeap() - before;
+        System.out.printf("%s: %d rows, %d MB retained, %d bytes per row%n", isStore ? "store" : "maps", rows, retained >> 20, retained / rows);
+        // keeps the results reachable until they are measured
+        if((isStore ? store.rawData.size() : maps.rawData.size()) != rows) throw new IllegalStateException();
+    }
+
+    private static long getUsedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // a few collections, until the used memory stops going down
+        for(int i = 0; i < 5; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if(current >= used) break;
+            used = current;
+        }
+        return used;
+    }
+}
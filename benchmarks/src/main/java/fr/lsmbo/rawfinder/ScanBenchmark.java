@@ -0,0 +1,23 @@
+package fr.lsmbo.rawfinder;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete scan of the generated tree: listing of the data directory and search of each raw file in the archives
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Benchmark
+    public DataParser scan(GeneratedTree tree) throws InterruptedException {
+        DataParser parser = new DataParser(Global.RAW_DATA_DIRECTORY);
+        parser.start();
+        return parser;
+    }
+}
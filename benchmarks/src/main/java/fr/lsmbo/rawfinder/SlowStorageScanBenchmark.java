@@ -0,0 +1,53 @@
+package fr.lsmbo.rawfinder;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete scan of the generated tree kept in memory, with the latency of a network share on each call.
+ * The number of calls made to the storage by each scan is reported with the results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlowStorageScanBenchmark {
+
+    // in microseconds
+    @Param({"0", "2000"})
+    public long listingLatency;
+
+    // in microseconds
+    @Param({"0", "200"})
+    public long attributeLatency;
+
+    private MemoryStorage storage;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StorageCalls {
+        public long listings;
+        public long attributeReads;
+    }
+
+    @Setup(Level.Trial)
+    public void copyTree(GeneratedTree tree) throws IOException {
+        storage = MemoryStorage.copyOf(Global.RAW_DATA_DIRECTORY, Global.RAW_DATA_ARCHIVES);
+        storage.setLatency(listingLatency, attributeLatency, TimeUnit.MICROSECONDS);
+    }
+
+    @Benchmark
+    public DataParser scan(GeneratedTree tree, StorageCalls calls) throws InterruptedException {
+        long listings = storage.getNbListings();
+        long attributeReads = storage.getNbAttributeReads();
+        DataParser parser = new DataParser(Global.RAW_DATA_DIRECTORY, storage);
+        parser.start();
+        calls.listings += storage.getNbListings() - listings;
+        calls.attributeReads += storage.getNbAttributeReads() - attributeReads;
+        return parser;
+    }
+}
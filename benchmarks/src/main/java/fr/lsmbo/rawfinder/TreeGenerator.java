@@ -0,0 +1,197 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Builds a synthetic data directory and its archive directory, for the benchmarks.
+ *
+ * The data directory contains instrument and project directories, each project containing raw data: '.d' directories
+ * (folder-like) or '.raw' files (file-like). Each raw file is copied in the archive month where RawFinder expects it,
+ * except a ratio of files that are not archived, archived with a wrong size, or archived the month after.
+ * The same seed always gives the same tree, only the file dates depend on the day the tree is generated.
+ */
+public class TreeGenerator {
+
+    public static final String FOLDER_LIKE_TEMPLATE = "RD.*\\.d";
+    public static final String FILE_LIKE_TEMPLATE = "RD.*\\.raw";
+
+    private long seed = 42;
+    private boolean isFolderLike = true;
+    private int nbInstruments = 2;
+    private int nbProjectsPerInstrument = 5;
+    private int nbRawDataPerProject = 10;
+    private int nbFilesPerRawData = 20;
+    private int minFileSize = 1;
+    private int maxFileSize = 4096;
+    private double missingRatio = 0.1;
+    private double wrongSizeRatio = 0.05;
+    private double nextMonthRatio = 0.05;
+    private int nbHistoryMonths = 12;
+    private int nbFilesPerHistoryMonth = 100;
+
+    private File rawDataDirectory;
+    private File archiveDirectory;
+    private File reportDirectory;
+    private int nbRawFiles = 0;
+    private int nbArchivedFiles = 0;
+
+    public void setSeed(long _seed) { seed = _seed; }
+    public void setFolderLike(boolean _isFolderLike) { isFolderLike = _isFolderLike; }
+    public void setNbInstruments(int _nbInstruments) { nbInstruments = _nbInstruments; }
+    public void setNbProjectsPerInstrument(int _nbProjectsPerInstrument) { nbProjectsPerInstrument = _nbProjectsPerInstrument; }
+    public void setNbRawDataPerProject(int _nbRawDataPerProject) { nbRawDataPerProject = _nbRawDataPerProject; }
+    /**
+     * @param _nbFilesPerRawData number of files in each '.d' directory, ignored for file-like raw data
+     */
+    public void setNbFilesPerRawData(int _nbFilesPerRawData) { nbFilesPerRawData = _nbFilesPerRawData; }
+    public void setFileSize(int _minFileSize, int _maxFileSize) { minFileSize = _minFileSize; maxFileSize = _maxFileSize; }
+    public void setMissingRatio(double _missingRatio) { missingRatio = _missingRatio; }
+    public void setWrongSizeRatio(double _wrongSizeRatio) { wrongSizeRatio = _wrongSizeRatio; }
+    public void setNextMonthRatio(double _nextMonthRatio) { nextMonthRatio = _nextMonthRatio; }
+    /**
+     * Previous months of the archive are filled with files that are no longer in the data directory,
+     * so the archive is larger than what the scan is looking for
+     */
+    public void setArchiveHistory(int _nbHistoryMonths, int _nbFilesPerHistoryMonth) { nbHistoryMonths = _nbHistoryMonths; nbFilesPerHistoryMonth = _nbFilesPerHistoryMonth; }
+
+    public File getRawDataDirectory() { return rawDataDirectory; }
+    public File getArchiveDirectory() { return archiveDirectory; }
+    public File getReportDirectory() { return reportDirectory; }
+    public int getNbRawFiles() { return nbRawFiles; }
+    public int getNbArchivedFiles() { return nbArchivedFiles; }
+
+    /**
+     * Creates the 'data', 'archives' and 'reports' directories in the given directory
+     */
+    public void generate(File directory) throws IOException {
+        Random random = new Random(seed);
+        rawDataDirectory = new File(directory, "data");
+        archiveDirectory = new File(directory, "archives");
+        reportDirectory = new File(directory, "reports");
+        nbRawFiles = 0;
+        nbArchivedFiles = 0;
+        mkdirs(reportDirectory);
+
+        for(int i = 0; i < nbInstruments; i++) {
+            for(int p = 0; p < nbProjectsPerInstrument; p++) {
+                File project = new File(rawDataDirectory, "instrument" + i + "/project" + p);
+                mkdirs(project);
+                for(int r = 0; r < nbRawDataPerProject; r++) {
+                    String name = "RD" + i + "_" + p + "_" + r;
+                    if(isFolderLike) {
+                        File rawData = new File(project, name + ".d");
+                        for(int f = 0; f < nbFilesPerRawData; f++) {
+                            // some files are in a sub-directory, like the acquisition methods
+                            File file = new File(rawData, (f % 4 == 3 ? "AcqData/" : "") + "file" + f + ".bin");
+                            addRawFile(file, random);
+                        }
+                        // Windows Explorer files are ignored by the scan
+                        write(new File(rawData, "desktop.ini"), new byte[] { 'x' });
+                    } else {
+                        addRawFile(new File(project, name + ".raw"), random);
+                    }
+                }
+                // files that do not match the templates
+                write(new File(project, "notes.txt"), new byte[] { 'x' });
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        for(int m = 1; m <= nbHistoryMonths; m++) {
+            File month = getMonthDirectory(now.minusMonths(m));
+            for(int f = 0; f < nbFilesPerHistoryMonth; f++) {
+                write(new File(month, "instrument0/old/RD_old" + m + "_" + f + ".raw"), randomContent(random));
+            }
+        }
+    }
+
+    private void addRawFile(File file, Random random) throws IOException {
+        byte[] content = randomContent(random);
+        write(file, content);
+        nbRawFiles++;
+
+        double choice = random.nextDouble();
+        if(choice < missingRatio) return;
+        // the archive month is based on the creation date, as the scan does
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        LocalDateTime creation = LocalDateTime.ofInstant(Instant.ofEpochMilli(attributes.creationTime().toMillis()), ZoneId.systemDefault());
+        if(choice < missingRatio + nextMonthRatio) creation = creation.plusMonths(1);
+        File archive = new File(getMonthDirectory(creation), rawDataDirectory.toURI().relativize(file.toURI()).getPath());
+        if(choice >= missingRatio + nextMonthRatio && choice < missingRatio + nextMonthRatio + wrongSizeRatio) {
+            // an interrupted copy
+            byte[] truncated = new byte[Math.max(0, content.length - 1)];
+            System.arraycopy(content, 0, truncated, 0, truncated.length);
+            content = truncated;
+        }
+        write(archive, content);
+        nbArchivedFiles++;
+    }
+
+    private File getMonthDirectory(LocalDateTime date) {
+        return new File(archiveDirectory, date.getYear() + "/" + Global.MONTH_NAMES[date.getMonthValue() - 1]);
+    }
+
+    private byte[] randomContent(Random random) {
+        byte[] content = new byte[minFileSize + random.nextInt(maxFileSize - minFileSize + 1)];
+        random.nextBytes(content);
+        return content;
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        mkdirs(file.getParentFile());
+        try (OutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+    }
+
+    private static void mkdirs(File directory) throws IOException {
+        if(!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Directory " + directory + " could not be created");
+    }
+
+    /**
+     * Points the settings of RawFinder to the generated tree
+     */
+    public void applySettings(int nbThreads) {
+        Global.RAW_DATA_DIRECTORY = rawDataDirectory;
+        Global.RAW_DATA_ARCHIVES = archiveDirectory;
+        Global.REPORTS_DIRECTORY = reportDirectory;
+        Global.IS_FOLDER_LIKE = isFolderLike;
+        Global.FOLDER_LIKE_RAW_DATA_TEMPLATE = Collections.singletonList(FOLDER_LIKE_TEMPLATE);
+        Global.FILE_LIKE_RAW_DATA_TEMPLATE = Collections.singletonList(FILE_LIKE_TEMPLATE);
+        Global.NB_THREADS = nbThreads;
+        Global.NB_PROBE_THREADS = nbThreads;
+        Global.ARCHIVE_CACHE_SIZE = 10000;
+        Global.USE_ARCHIVE_INDEX = false;
+        Global.INCREMENTAL_SCAN = false;
+        Global.MAX_ROWS_PER_REPORT = 1000000;
+        Global.VERIFY_CHECKSUMS = false;
+        Global.NB_VERIFY_THREADS = 4;
+        Global.PIPELINE_QUEUE_SIZE = 10000;
+        Global.USE_NATIVE_LISTING = false;
+        Global.EXCLUDED_DIRECTORIES = Collections.emptyList();
+        Global.MAX_DEPTH = 0;
+        Global.DATE_WINDOW_TYPE = "";
+        Global.DATE_WINDOW_START = "";
+        Global.DATE_WINDOW_END = "";
+    }
+
+    /**
+     * Deletes the generated tree
+     */
+    public static void delete(File directory) throws IOException {
+        if(!directory.exists()) return;
+        Files.walk(directory.toPath()).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+}
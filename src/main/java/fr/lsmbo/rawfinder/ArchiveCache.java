@@ -0,0 +1,95 @@
+package fr.lsmbo.rawfinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the content of the archive directories in memory, so each directory is listed only once
+ * instead of asking the archive share for every candidate file.
+ * The number of directories kept is bounded: the least recently used ones are evicted first.
+ */
+public class ArchiveCache {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ArchiveCache.class);
+    // Windows shares do not care about the case of the file names
+    static final boolean IS_CASE_INSENSITIVE = File.separatorChar == '\\';
+
+    private final Storage storage;
+    private final Map<File, Map<String, FileInfo>> listings;
+    private final LongAdder nbLookups = new LongAdder();
+    private final LongAdder nbListings = new LongAdder();
+    private final LongAdder nbEvictions = new LongAdder();
+
+    public ArchiveCache(int maxDirectories, Storage _storage) {
+        storage = _storage;
+        listings = Collections.synchronizedMap(new LinkedHashMap<File, Map<String, FileInfo>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, Map<String, FileInfo>> eldest) {
+                if(size() <= maxDirectories) return false;
+                nbEvictions.increment();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @return the attributes of the given archive file, or null if it does not exist
+     */
+    public FileInfo get(File archive) {
+        nbLookups.increment();
+        File directory = archive.getParentFile();
+        Map<String, FileInfo> listing = listings.get(directory);
+        if(listing == null) {
+            // two threads may list the same directory at the same time, it does not hurt
+            listing = new HashMap<>();
+            // a listing that failed partway only answers this lookup, the directory is listed again for the next one
+            if(list(directory, listing)) listings.put(directory, listing.isEmpty() ? Collections.emptyMap() : listing);
+        }
+        return listing.get(getKey(archive.getName()));
+    }
+
+    /**
+     * @return false if the directory could not be entirely read
+     */
+    private boolean list(File directory, Map<String, FileInfo> listing) {
+        nbListings.increment();
+        boolean isComplete = true;
+        try (DirectoryStream<FileInfo> stream = storage.list(directory)) {
+            Iterator<FileInfo> items = stream.iterator();
+            while(items.hasNext()) {
+                try {
+                    FileInfo item = items.next();
+                    listing.put(getKey(item.getName()), item);
+                } catch (DirectoryIteratorException die) {
+                    // only this item is lost, the other items of the directory are still read
+                    logger.warn("An item of archive directory " + directory.getAbsolutePath() + " could not be read", die.getCause());
+                    isComplete = false;
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException | InvalidPathException e) {
+            // the directory does not exist, remember it as an empty directory
+            return true;
+        } catch (IOException | DirectoryIteratorException e) {
+            logger.warn("Archive directory " + directory.getAbsolutePath() + " could not be read", e);
+            return false;
+        }
+        return isComplete;
+    }
+
+    private String getKey(String name) {
+        return IS_CASE_INSENSITIVE ? name.toLowerCase(Locale.ROOT) : name;
+    }
+
+    public String getSummary() {
+        long lookups = nbLookups.sum();
+        long directories = nbListings.sum();
+        return "- Archive lookups: " + lookups + " answered with " + directories + " directory listings (" +
+                Math.max(0, lookups - directories) + " metadata calls saved, " + nbEvictions.sum() + " directories evicted from the cache)\n";
+    }
+}
@@ -0,0 +1,300 @@
+package fr.lsmbo.rawfinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+/**
+ * Persistent index of the archive directory, stored in a binary file and loaded in memory when a scan starts.
+ *
+ * The archive is append-only, so the index is only updated for the year/month directories whose modification date
+ * has changed since the last run, and for the current and previous months that are still being filled.
+ * The content of a month directory is a list of (hash of the relative path, size, creation date, modification date)
+ * sorted by hash, so a lookup is a binary search in memory.
+ * The entries are read into the heap rather than memory-mapped: a mapping is only released by the garbage collector,
+ * and Windows refuses to replace the index file of the next scan as long as it is mapped.
+ *
+ * File layout: header (magic, version, number of months), month table (year, month, directory modification date,
+ * first entry, number of entries), then the entries of each month.
+ */
+public class ArchiveIndex {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ArchiveIndex.class);
+    private static final int MAGIC = 0x52464149; // "RFAI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int MONTH_SIZE = 24;
+    private static final int ENTRY_SIZE = 32;
+
+    private final File archiveDirectory;
+    private final Map<String, Month> months = new HashMap<>();
+    private final LongAdder nbHits = new LongAdder();
+    private int nbMonthsRead = 0;
+    private long nbEntries = 0;
+
+    private static class Month {
+        int year;
+        int month;
+        long lastModified;
+        long firstEntry;
+        int nbEntries;
+        // only set when the month is read again from the archive
+        long[] entries;
+        // only set once the index is loaded
+        ByteBuffer buffer;
+    }
+
+    private ArchiveIndex(File _archiveDirectory) {
+        archiveDirectory = _archiveDirectory.getAbsoluteFile();
+    }
+
+    /**
+     * Loads the index file, updates it with the month directories that have changed, and maps it in memory
+     */
+    public static ArchiveIndex open(File indexFile, File archiveDirectory) throws IOException {
+        return open(indexFile, archiveDirectory, archiveMonth -> true);
+    }
+
+    /**
+     * Same as above, only the month directories accepted by the filter are read again, the others keep their
+     * previous content: a file missing from the index is still searched in the archive directory itself
+     * @param monthFilter accepts the months (year * 12 + month) that may be searched during the scan
+     */
+    public static ArchiveIndex open(File indexFile, File archiveDirectory, IntPredicate monthFilter) throws IOException {
+        ArchiveIndex index = new ArchiveIndex(archiveDirectory);
+        Map<String, Month> previousMonths = index.readMonthTable(indexFile);
+        boolean hasChanged = index.update(previousMonths, monthFilter);
+        if(hasChanged) index.write(indexFile, previousMonths);
+        index.load(indexFile);
+        logger.info("Archive index '" + indexFile.getName() + "' contains " + index.nbEntries + " files in " + index.months.size() + " months (" + index.nbMonthsRead + " months read again)");
+        return index;
+    }
+
+    private static String getMonthKey(int year, int month) {
+        return year + "/" + month;
+    }
+
+    private Map<String, Month> readMonthTable(File indexFile) {
+        Map<String, Month> previousMonths = new HashMap<>();
+        if(!indexFile.exists()) return previousMonths;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+                logger.warn("Archive index '" + indexFile.getName() + "' has an unknown format, it will be created again");
+                return previousMonths;
+            }
+            int nbMonths = input.readInt();
+            for(int i = 0; i < nbMonths; i++) {
+                Month month = new Month();
+                month.year = input.readInt();
+                month.month = input.readInt();
+                month.lastModified = input.readLong();
+                month.firstEntry = input.readInt() & 0xFFFFFFFFL;
+                month.nbEntries = input.readInt();
+                previousMonths.put(getMonthKey(month.year, month.month), month);
+            }
+        } catch (IOException ioe) {
+            logger.warn("Archive index '" + indexFile.getName() + "' could not be read, it will be created again", ioe);
+            previousMonths.clear();
+        }
+        return previousMonths;
+    }
+
+    /**
+     * Lists the year/month directories of the archive, and reads again the months that may have changed
+     * @return true if the index file has to be written again
+     */
+    private boolean update(Map<String, Month> previousMonths, IntPredicate monthFilter) throws IOException {
+        LocalDate today = LocalDate.now();
+        LocalDate lastMonth = today.minusMonths(1);
+        boolean hasChanged = false;
+        try (DirectoryStream<Path> years = Files.newDirectoryStream(archiveDirectory.toPath())) {
+            for (Path yearPath : years) {
+                String yearName = yearPath.getFileName().toString();
+                if(!yearName.matches("\\d{4}") || !Files.isDirectory(yearPath)) continue;
+                int year = Integer.parseInt(yearName);
+                try (DirectoryStream<Path> monthPaths = Files.newDirectoryStream(yearPath)) {
+                    for (Path monthPath : monthPaths) {
+                        int monthIndex = Arrays.asList(Global.MONTH_NAMES).indexOf(monthPath.getFileName().toString());
+                        if(monthIndex == -1) continue;
+                        Month previous = previousMonths.get(getMonthKey(year, monthIndex));
+                        Month month = new Month();
+                        month.year = year;
+                        month.month = monthIndex;
+                        if(!monthFilter.test(year * 12 + monthIndex)) {
+                            // kept as it was, with its previous modification date so it is read again by the next complete scan
+                            if(previous == null) continue;
+                            month.lastModified = previous.lastModified;
+                            month.firstEntry = previous.firstEntry;
+                            month.nbEntries = previous.nbEntries;
+                            months.put(getMonthKey(year, monthIndex), month);
+                            continue;
+                        }
+                        BasicFileAttributes attributes = Files.readAttributes(monthPath, BasicFileAttributes.class);
+                        if(!attributes.isDirectory()) continue;
+
+                        month.lastModified = attributes.lastModifiedTime().toMillis();
+                        boolean isOpen = (year == today.getYear() && monthIndex + 1 == today.getMonthValue()) || (year == lastMonth.getYear() && monthIndex + 1 == lastMonth.getMonthValue());
+                        if(previous != null && previous.lastModified == month.lastModified && !isOpen) {
+                            // same place in the file as long as the file is not written again
+                            month.firstEntry = previous.firstEntry;
+                            month.nbEntries = previous.nbEntries;
+                        } else {
+                            month.entries = readMonth(monthPath);
+                            month.nbEntries = month.entries.length / 4;
+                            nbMonthsRead++;
+                            hasChanged = true;
+                        }
+                        months.put(getMonthKey(year, monthIndex), month);
+                    }
+                }
+            }
+        }
+        // months that have disappeared also require a new file
+        return hasChanged || !months.keySet().equals(previousMonths.keySet());
+    }
+
+    private long[] readMonth(Path monthPath) throws IOException {
+        logger.info("Indexing archive directory " + monthPath);
+        List<long[]> entries = new ArrayList<>();
+        Files.walkFileTree(monthPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if(attributes.isRegularFile()) {
+                    entries.add(new long[] { hash(monthPath.relativize(file)), attributes.size(), attributes.creationTime().toMillis(), attributes.lastModifiedTime().toMillis() });
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ioe) {
+                logger.warn("Archive file " + file + " could not be indexed", ioe);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        entries.sort((e1, e2) -> Long.compare(e1[0], e2[0]));
+        long[] flatEntries = new long[entries.size() * 4];
+        for(int i = 0; i < entries.size(); i++) System.arraycopy(entries.get(i), 0, flatEntries, i * 4, 4);
+        return flatEntries;
+    }
+
+    private void write(File indexFile, Map<String, Month> previousMonths) throws IOException {
+        File temporaryFile = new File(indexFile.getAbsolutePath() + ".tmp");
+        List<Month> sortedMonths = new ArrayList<>(months.values());
+        sortedMonths.sort(Comparator.comparingInt((Month m) -> m.year).thenComparingInt(m -> m.month));
+        try (FileChannel output = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel input = indexFile.exists() ? FileChannel.open(indexFile.toPath(), StandardOpenOption.READ) : null) {
+            // header and month table
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + MONTH_SIZE * sortedMonths.size());
+            header.putInt(MAGIC).putInt(VERSION).putInt(sortedMonths.size());
+            long firstEntry = 0;
+            for(Month month : sortedMonths) {
+                month.firstEntry = firstEntry;
+                header.putInt(month.year).putInt(month.month).putLong(month.lastModified).putInt((int) firstEntry).putInt(month.nbEntries);
+                firstEntry += month.nbEntries;
+            }
+            header.flip();
+            while(header.hasRemaining()) output.write(header);
+
+            // entries: copied from the previous file when the month has not changed
+            long previousEntriesOffset = HEADER_SIZE + (long) MONTH_SIZE * previousMonths.size();
+            for(Month month : sortedMonths) {
+                if(month.entries == null) {
+                    Month previous = previousMonths.get(getMonthKey(month.year, month.month));
+                    long position = previousEntriesOffset + previous.firstEntry * ENTRY_SIZE;
+                    long length = (long) previous.nbEntries * ENTRY_SIZE;
+                    while(length > 0) {
+                        long transferred = input.transferTo(position, length, output);
+                        position += transferred;
+                        length -= transferred;
+                    }
+                } else {
+                    ByteBuffer buffer = ByteBuffer.allocate(month.entries.length * 8);
+                    buffer.asLongBuffer().put(month.entries);
+                    while(buffer.hasRemaining()) output.write(buffer);
+                    month.entries = null;
+                }
+            }
+        }
+        Files.move(temporaryFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load(File indexFile) throws IOException {
+        if(!indexFile.exists()) return; // empty archive, nothing has been written
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            long entriesOffset = HEADER_SIZE + (long) MONTH_SIZE * months.size();
+            for(Month month : months.values()) {
+                // one buffer per month avoids the 2GB limit, the file is closed once read
+                ByteBuffer buffer = ByteBuffer.allocate(month.nbEntries * ENTRY_SIZE);
+                long position = entriesOffset + month.firstEntry * ENTRY_SIZE;
+                while(buffer.hasRemaining()) {
+                    int nbBytes = channel.read(buffer, position);
+                    if(nbBytes < 0) throw new EOFException("Archive index '" + indexFile.getName() + "' is truncated");
+                    position += nbBytes;
+                }
+                month.buffer = buffer;
+                nbEntries += month.nbEntries;
+            }
+        }
+    }
+
+    /**
+     * @return the attributes of the given archive file, or null if the index does not know it
+     */
+    public FileInfo get(File archive) {
+        try {
+            Path relativePath = archiveDirectory.toPath().relativize(archive.toPath());
+            if(relativePath.getNameCount() < 3) return null;
+            String yearName = relativePath.getName(0).toString();
+            if(!yearName.matches("\\d{4}")) return null;
+            Month month = months.get(getMonthKey(Integer.parseInt(yearName), Arrays.asList(Global.MONTH_NAMES).indexOf(relativePath.getName(1).toString())));
+            if(month == null || month.buffer == null) return null;
+            int position = binarySearch(month.buffer, month.nbEntries, hash(relativePath.subpath(2, relativePath.getNameCount())));
+            if(position < 0) return null;
+            nbHits.increment();
+            return new FileInfo(archive, false, month.buffer.getLong(position + 8), month.buffer.getLong(position + 16), month.buffer.getLong(position + 24));
+        } catch (IllegalArgumentException e) {
+            // not a valid path, or not a path within the archive directory
+            return null;
+        }
+    }
+
+    private static int binarySearch(ByteBuffer buffer, int nbEntries, long hash) {
+        int low = 0;
+        int high = nbEntries - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = buffer.getLong(middle * ENTRY_SIZE);
+            if(value < hash) low = middle + 1;
+            else if(value > hash) high = middle - 1;
+            else return middle * ENTRY_SIZE;
+        }
+        return -1;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a path relative to its month directory, using '/' as separator
+     */
+    private static long hash(Path relativePath) {
+        String path = relativePath.toString().replace('\\', '/');
+        if(ArchiveCache.IS_CASE_INSENSITIVE) path = path.toLowerCase(Locale.ROOT);
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public String getSummary() {
+        return "- Archive index: " + nbHits.sum() + " archived files found in the index (" + nbEntries + " files indexed in " + months.size() + " months)\n";
+    }
+}
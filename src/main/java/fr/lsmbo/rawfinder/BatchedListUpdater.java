@@ -0,0 +1,70 @@
+package fr.lsmbo.rawfinder;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adds items to an observable list from any thread. The items are queued and added by batches on the JavaFX thread,
+ * so the list fires a single change event every period instead of one event per item.
+ * An update is only sent when the previous one has been applied, so a busy JavaFX thread is never flooded.
+ */
+public class BatchedListUpdater<T> implements Closeable {
+
+    private static final long PERIOD = 100; // in milliseconds
+
+    private final ObservableList<T> list;
+    private final Runnable afterUpdate;
+    private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isUpdatePending = new AtomicBoolean(false);
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param _list the list to update, it must only be modified on the JavaFX thread
+     * @param _afterUpdate called on the JavaFX thread after each update (to refresh the items already displayed), may be null
+     */
+    public BatchedListUpdater(ObservableList<T> _list, Runnable _afterUpdate) {
+        list = _list;
+        afterUpdate = _afterUpdate;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "list-updater");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::update, PERIOD, PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    public void add(T item) {
+        queue.add(item);
+    }
+
+    private void update() {
+        if(!isUpdatePending.compareAndSet(false, true)) return;
+        Platform.runLater(() -> {
+            // the items are taken on the JavaFX thread, so the ones queued in the meantime are in the same batch
+            List<T> batch = new ArrayList<>();
+            T item;
+            while((item = queue.poll()) != null) batch.add(item);
+            if(!batch.isEmpty()) list.addAll(batch);
+            if(afterUpdate != null) afterUpdate.run();
+            isUpdatePending.set(false);
+        });
+    }
+
+    /**
+     * Stops the updates, the items still in the queue are dropped
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        queue.clear();
+    }
+}
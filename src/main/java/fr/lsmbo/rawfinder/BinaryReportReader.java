@@ -0,0 +1,63 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Loads a report written by BinaryReportWriter, and sends its content to another writer
+ * (for instance to convert it into a CSV or JSON Lines report).
+ */
+public class BinaryReportReader {
+
+    private BinaryReportReader() {}
+
+    public static void read(File inputFile, ReportWriter target) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(inputFile), 1 << 16))) {
+            if(input.readInt() != BinaryReportWriter.MAGIC || input.readInt() != BinaryReportWriter.VERSION) {
+                throw new IOException("File " + inputFile.getName() + " is not a RawFinder binary report");
+            }
+            File rawDataDirectory = new File(input.readUTF());
+            File archiveDirectory = new File(input.readUTF());
+            List<String> names = new ArrayList<>();
+            byte type;
+            while((type = input.readByte()) != BinaryReportWriter.END) {
+                String name = readName(input, names);
+                if(type == BinaryReportWriter.FILE) {
+                    File file = getFile(rawDataDirectory, input.readUTF());
+                    FileInfo fileInfo = new FileInfo(file, false, input.readLong(), input.readLong(), input.readLong());
+                    FileInfo archiveInfo = null;
+                    if(input.readBoolean()) {
+                        File archive = getFile(archiveDirectory, input.readUTF());
+                        archiveInfo = new FileInfo(archive, false, input.readLong(), input.readLong(), input.readLong());
+                    }
+                    byte checksumMatch = input.readByte();
+                    target.writeFile(fileInfo, archiveInfo, name, checksumMatch == BinaryReportWriter.NOT_VERIFIED ? null : checksumMatch == BinaryReportWriter.CHECKSUM_MATCH);
+                } else if(type == BinaryReportWriter.RAW_DATA) {
+                    double size = input.readDouble();
+                    long date = input.readLong();
+                    int nbFilesArchived = input.readInt();
+                    int nbFilesTotal = input.readInt();
+                    int nbFilesCorrupted = input.readInt();
+                    target.writeRawData(new RawData(name, size, date == BinaryReportWriter.NO_DATE ? null : new Date(date), nbFilesArchived, nbFilesTotal, nbFilesCorrupted));
+                } else {
+                    throw new IOException("File " + inputFile.getName() + " contains an unknown record type " + type);
+                }
+            }
+        }
+    }
+
+    private static String readName(DataInputStream input, List<String> names) throws IOException {
+        int id = input.readInt();
+        if(id < names.size()) return names.get(id);
+        String name = input.readUTF();
+        names.add(name);
+        return name;
+    }
+
+    private static File getFile(File directory, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(directory, path);
+    }
+}
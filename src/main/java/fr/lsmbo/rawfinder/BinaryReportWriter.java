@@ -0,0 +1,98 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes a compact binary report that BinaryReportReader can load back quickly.
+ *
+ * File layout: header (magic, version, data directory, archive directory), then one record per raw file or raw data
+ * starting with its type, and an end record. Paths are written relative to the data and archive directories, and
+ * each raw data name is written only once and then referred to by its number.
+ */
+public class BinaryReportWriter implements ReportWriter {
+
+    static final int MAGIC = 0x52464252; // "RFBR"
+    static final int VERSION = 2;
+    static final byte END = 0;
+    static final byte FILE = 1;
+    static final byte RAW_DATA = 2;
+    static final long NO_DATE = Long.MIN_VALUE;
+    static final byte NOT_VERIFIED = 0;
+    static final byte CHECKSUM_MATCH = 1;
+    static final byte CHECKSUM_MISMATCH = 2;
+
+    private final DataOutputStream output;
+    private final String rawDataDirectory;
+    private final String archiveDirectory;
+    private final Map<String, Integer> names = new HashMap<>();
+
+    public BinaryReportWriter(File outputFile) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16));
+        rawDataDirectory = getDirectoryPath(Global.RAW_DATA_DIRECTORY);
+        archiveDirectory = getDirectoryPath(Global.RAW_DATA_ARCHIVES);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeUTF(rawDataDirectory);
+        output.writeUTF(archiveDirectory);
+    }
+
+    private static String getDirectoryPath(File directory) {
+        return directory == null ? "" : directory.getAbsolutePath();
+    }
+
+    @Override
+    public void writeFile(FileInfo file, FileInfo archive, String rawFileName, Boolean checksumMatch) throws IOException {
+        output.writeByte(FILE);
+        writeName(rawFileName);
+        output.writeUTF(getRelativePath(rawDataDirectory, file.getFile()));
+        output.writeLong(file.getSize());
+        output.writeLong(file.getCreationTime());
+        output.writeLong(file.getLastModifiedTime());
+        output.writeBoolean(archive != null);
+        if(archive != null) {
+            output.writeUTF(getRelativePath(archiveDirectory, archive.getFile()));
+            output.writeLong(archive.getSize());
+            output.writeLong(archive.getCreationTime());
+            output.writeLong(archive.getLastModifiedTime());
+        }
+        output.writeByte(checksumMatch == null ? NOT_VERIFIED : checksumMatch ? CHECKSUM_MATCH : CHECKSUM_MISMATCH);
+    }
+
+    @Override
+    public void writeRawData(RawData rawData) throws IOException {
+        output.writeByte(RAW_DATA);
+        writeName(rawData.getName());
+        output.writeDouble(rawData.getSize());
+        output.writeLong(rawData.getDate() == null ? NO_DATE : rawData.getDate().getTime());
+        output.writeInt(rawData.getNbFilesArchived());
+        output.writeInt(rawData.getNbFilesTotal());
+        output.writeInt(rawData.getNbFilesCorrupted());
+    }
+
+    // a new name gets the next number and is written after it, a known name is only written as its number
+    private void writeName(String name) throws IOException {
+        Integer id = names.get(name);
+        if(id != null) {
+            output.writeInt(id);
+        } else {
+            output.writeInt(names.size());
+            output.writeUTF(name);
+            names.put(name, names.size());
+        }
+    }
+
+    // paths outside of the directory are kept absolute
+    private static String getRelativePath(String directory, File file) {
+        String path = file.getAbsolutePath();
+        if(!directory.isEmpty() && path.startsWith(directory + File.separator)) return path.substring(directory.length() + 1);
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.writeByte(END);
+        output.close();
+    }
+}
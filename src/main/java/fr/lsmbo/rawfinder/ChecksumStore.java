@@ -0,0 +1,184 @@
+package fr.lsmbo.rawfinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent store of the checksums already computed, so a file is only read again if it has changed.
+ *
+ * A checksum is known for an absolute path, a size and a modification date. The store is a log file where new
+ * checksums are appended, each record ending with its own CRC32: a record that has been partially written
+ * (if RawFinder has been stopped while writing) is ignored and removed when the log is read again.
+ * The log is compacted when more than half of its records have been replaced by newer ones.
+ */
+public class ChecksumStore implements Closeable {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ChecksumStore.class);
+    private static final int MAGIC = 0x52464353; // "RFCS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final long checksum;
+        Entry(long _size, long _lastModified, long _checksum) {
+            size = _size;
+            lastModified = _lastModified;
+            checksum = _checksum;
+        }
+    }
+
+    private final File storeFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder nbHits = new LongAdder();
+    private final LongAdder nbMisses = new LongAdder();
+    private DataOutputStream output;
+
+    private ChecksumStore(File _storeFile) {
+        storeFile = _storeFile;
+    }
+
+    /**
+     * Reads the log, removes any incomplete record at its end, compacts it if needed and opens it for writing
+     */
+    public static ChecksumStore open(File storeFile) throws IOException {
+        ChecksumStore store = new ChecksumStore(storeFile);
+        long nbRecords = store.read();
+        if(nbRecords > 2L * store.entries.size() && store.entries.size() > 0) store.compact();
+        if(!storeFile.exists() || storeFile.length() < HEADER_SIZE) store.writeHeader();
+        store.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile, true), 1 << 16));
+        logger.info("Checksum store '" + storeFile.getName() + "' contains " + store.entries.size() + " checksums");
+        return store;
+    }
+
+    /**
+     * @return the number of valid records
+     */
+    private long read() throws IOException {
+        if(!storeFile.exists()) return 0;
+        long nbRecords = 0;
+        long validLength = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile), 1 << 16))) {
+            if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+                logger.warn("Checksum store '" + storeFile.getName() + "' has an unknown format, it will be created again");
+                Files.delete(storeFile.toPath());
+                return 0;
+            }
+            validLength = HEADER_SIZE;
+            while(true) {
+                int length = input.readInt();
+                if(length < 0 || length > 65536) break;
+                byte[] path = new byte[length];
+                input.readFully(path);
+                long size = input.readLong();
+                long lastModified = input.readLong();
+                long checksum = input.readLong();
+                int recordChecksum = input.readInt();
+                if(recordChecksum != getRecordChecksum(path, size, lastModified, checksum)) break;
+                entries.put(new String(path, StandardCharsets.UTF_8), new Entry(size, lastModified, checksum));
+                validLength += 4 + length + 8 * 3 + 4;
+                nbRecords++;
+            }
+        } catch (EOFException eof) {
+            // end of the log, or a record that has not been completely written
+        }
+        if(validLength < storeFile.length()) {
+            logger.warn("Checksum store '" + storeFile.getName() + "' ends with an incomplete record, it is removed");
+            try (FileChannel channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return nbRecords;
+    }
+
+    private void writeHeader() throws IOException {
+        try (DataOutputStream header = new DataOutputStream(new FileOutputStream(storeFile))) {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+        }
+    }
+
+    // the log is written again with the latest checksum of each file only
+    private void compact() throws IOException {
+        File temporaryFile = new File(storeFile.getAbsolutePath() + ".tmp");
+        try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+            compacted.writeInt(MAGIC);
+            compacted.writeInt(VERSION);
+            for(Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writeRecord(compacted, entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(temporaryFile.toPath(), storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Checksum store '" + storeFile.getName() + "' has been compacted");
+    }
+
+    private static void writeRecord(DataOutputStream stream, String path, Entry entry) throws IOException {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+        stream.writeLong(entry.size);
+        stream.writeLong(entry.lastModified);
+        stream.writeLong(entry.checksum);
+        stream.writeInt(getRecordChecksum(bytes, entry.size, entry.lastModified, entry.checksum));
+    }
+
+    private static int getRecordChecksum(byte[] path, long size, long lastModified, long checksum) {
+        CRC32 crc = new CRC32();
+        crc.update(path);
+        for(long value : new long[] { size, lastModified, checksum }) {
+            for(int i = 56; i >= 0; i -= 8) crc.update((int) (value >>> i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @param file attributes of the file as currently read from the storage
+     * @return the checksum computed previously for this file, or null if the file is unknown or has changed since
+     */
+    public Long get(FileInfo file) {
+        Entry entry = entries.get(file.getFile().getAbsolutePath());
+        if(entry != null && entry.size == file.getSize() && entry.lastModified == file.getLastModifiedTime()) {
+            nbHits.increment();
+            return entry.checksum;
+        }
+        nbMisses.increment();
+        return null;
+    }
+
+    public void put(FileInfo file, long checksum) {
+        String path = file.getFile().getAbsolutePath();
+        Entry entry = new Entry(file.getSize(), file.getLastModifiedTime(), checksum);
+        entries.put(path, entry);
+        synchronized (this) {
+            try {
+                writeRecord(output, path, entry);
+            } catch (IOException ioe) {
+                // the checksum will just be computed again next time
+                logger.warn("Checksum of " + path + " could not be stored", ioe);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        output.close();
+    }
+
+    public String getSummary() {
+        long hits = nbHits.sum();
+        long total = hits + nbMisses.sum();
+        return "- Checksum store: " + hits + " checksums reused out of " + total + " (" + (total == 0 ? 0 : hits * 100 / total) + "% hit rate), " + entries.size() + " checksums stored\n";
+    }
+}
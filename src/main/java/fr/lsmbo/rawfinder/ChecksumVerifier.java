@@ -0,0 +1,119 @@
+package fr.lsmbo.rawfinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Compares the content of raw files with their archived version, using a CRC32 checksum of each file.
+ *
+ * Files are read sequentially with large direct buffers. The comparisons are done by the "verify" step of the
+ * scan, which has its own threads so the number of concurrent reads on the data and archive storages can be tuned,
+ * and reading the files overlaps with listing the directories.
+ * Checksums are kept in a ChecksumStore, so only the files that are new or have changed are read.
+ */
+public class ChecksumVerifier {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ChecksumVerifier.class);
+    private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private final ChecksumStore store;
+    // one buffer per reading thread, allocated outside of the heap so the file channel reads into it directly
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private final LongAdder nbFilesVerified = new LongAdder();
+    private final LongAdder nbMismatches = new LongAdder();
+    private final LongAdder nbErrors = new LongAdder();
+    private final LongAdder nbBytesRead = new LongAdder();
+    private final long startTime = System.currentTimeMillis();
+    private long endTime = 0;
+    private volatile boolean isCancelled = false;
+
+    /**
+     * @param _store the checksums already known, or null to read all the files
+     */
+    public ChecksumVerifier(ChecksumStore _store) {
+        store = _store;
+    }
+
+    /**
+     * @return true if the file and its archived version have the same content
+     */
+    public boolean verify(FileInfo file, FileInfo archive) {
+        boolean isMatch;
+        try {
+            isMatch = getChecksum(file) == getChecksum(archive);
+        } catch (IOException ioe) {
+            // a file that can not be read can not be considered as correctly archived
+            logger.warn("Checksum of " + file.getFile().getAbsolutePath() + " could not be verified", ioe);
+            nbErrors.increment();
+            isMatch = false;
+        }
+        nbFilesVerified.increment();
+        if(!isMatch) nbMismatches.increment();
+        return isMatch;
+    }
+
+    private long getChecksum(FileInfo file) throws IOException {
+        if(store == null) return getChecksum(file.getFile());
+        // the attributes given may come from the archive index or from the previous scan, the stored checksum is
+        // only reused if the file on disk still has the same size and modification date
+        FileInfo current = FileInfo.read(file.getFile());
+        if(current == null) throw new NoSuchFileException(file.getFile().getAbsolutePath());
+        Long checksum = store.get(current);
+        if(checksum == null) {
+            checksum = getChecksum(file.getFile());
+            // a file modified while it was read would be stored with a checksum that does not match its attributes
+            if(isUnchanged(current, FileInfo.read(file.getFile()))) store.put(current, checksum);
+        }
+        return checksum;
+    }
+
+    private static boolean isUnchanged(FileInfo before, FileInfo after) {
+        return after != null && after.getSize() == before.getSize() && after.getLastModifiedTime() == before.getLastModifiedTime();
+    }
+
+    long getChecksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+            int nbBytes;
+            while((nbBytes = channel.read(buffer)) != -1) {
+                // large files take a while, so the cancellation is checked for each buffer
+                if(isCancelled) throw new CancellationException("Checksum verification has been cancelled");
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+                nbBytesRead.add(nbBytes);
+            }
+        }
+        return crc.getValue();
+    }
+
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * Called once all the files have been verified, to compute the reading speed
+     */
+    public void finish() {
+        endTime = System.currentTimeMillis();
+    }
+
+    public String getSummary() {
+        long duration = Math.max(1, (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime);
+        long bytes = nbBytesRead.sum();
+        return "- Checksum verification: " + nbFilesVerified.sum() + " files verified, " + nbMismatches.sum() + " with a different content (" +
+                nbErrors.sum() + " could not be read), " + Global.formatSize(bytes) + " read at " + Global.formatSize(bytes * 1000 / duration) + "/s\n";
+    }
+}
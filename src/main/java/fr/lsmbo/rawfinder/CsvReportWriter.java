@@ -0,0 +1,84 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Writes the raw files in a CSV file, and the raw data in a second CSV file next to it ("-rawdata.csv").
+ * Dates are written in ISO-8601 format (UTC) and sizes in bytes.
+ */
+public class CsvReportWriter implements ReportWriter {
+
+    private static final String[] FILE_HEADERS = new String[] { "Raw file name", "Local file path", "Local file size (bytes)",
+            "Local file creation date", "Local file last modification date", "Archived file path", "Archived file size (bytes)",
+            "Archived file creation date", "Size match", "Checksum match" };
+    private static final String[] RAW_DATA_HEADERS = new String[] { "Raw file name", "Size (bytes)", "Creation date",
+            "Number of files", "Number of files archived", "Number of files corrupted", "Raw file status" };
+    private final Writer files;
+    private final Writer rawData;
+
+    public CsvReportWriter(File outputFile) throws IOException {
+        files = open(outputFile);
+        rawData = open(getRawDataFile(outputFile));
+        writeLine(files, FILE_HEADERS);
+        writeLine(rawData, RAW_DATA_HEADERS);
+    }
+
+    public static File getRawDataFile(File outputFile) {
+        String name = outputFile.getName().replaceAll("\\.csv$", "");
+        return new File(outputFile.getAbsoluteFile().getParentFile(), name + "-rawdata.csv");
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public void writeFile(FileInfo file, FileInfo archive, String rawFileName, Boolean checksumMatch) throws IOException {
+        writeLine(files, new String[] { rawFileName, file.getFile().getAbsolutePath(), ""+file.getSize(),
+                formatDate(file.getCreationTime()), formatDate(file.getLastModifiedTime()),
+                archive == null ? "" : archive.getFile().getAbsolutePath(),
+                archive == null ? "" : ""+archive.getSize(),
+                archive == null ? "" : formatDate(archive.getCreationTime()),
+                archive != null && archive.getSize() == file.getSize() ? "TRUE" : "FALSE",
+                checksumMatch == null ? "" : checksumMatch ? "TRUE" : "FALSE" });
+    }
+
+    @Override
+    public void writeRawData(RawData item) throws IOException {
+        writeLine(rawData, new String[] { item.getName(), ""+item.getSize().longValue(),
+                item.getDate() == null ? "" : formatDate(item.getDate().getTime()),
+                ""+item.getNbFilesTotal(), ""+item.getNbFilesArchived(), ""+item.getNbFilesCorrupted(), item.getStatus() });
+    }
+
+    private static String formatDate(long time) {
+        return Instant.ofEpochMilli(time).toString();
+    }
+
+    private static void writeLine(Writer writer, String[] items) throws IOException {
+        for(int i = 0; i < items.length; i++) {
+            if(i > 0) writer.write(',');
+            writer.write(escape(items[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    // values containing a separator, a quote or a line break are quoted (RFC 4180)
+    private static String escape(String value) {
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == ',' || c == '"' || c == '\n' || c == '\r') return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            files.close();
+        } finally {
+            rawData.close();
+        }
+    }
+}
@@ -5,111 +5,726 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZoneOffset;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class DataParser {
     protected static final Logger logger = LoggerFactory.getLogger(DataParser.class);
 
-    private enum Policy { CREATION_DATE, NEXT_MONTH, MODIFICATION_DATE }
-    private final HashMap<File, File> data = new HashMap<>();
-    private final HashMap<String, RawData> rawData = new HashMap<>();
+    // in the order they are tried when nothing is known about a subtree
+    enum Policy {
+        CREATION_DATE ("creation date"),
+        MODIFICATION_DATE ("modification date"),
+        NEXT_MONTH ("next month");
+        private final String name;
+        Policy(String policy) { name = policy; }
+        public String toString() { return this.name; }
+    }
+    // filled concurrently by the probe workers, the raw data keep the status counts up to date
+    private final Map<String, RawData> rawData = new ConcurrentHashMap<>();
+    private final StatusCounts statusCounts = new StatusCounts();
+    // the raw files, with the attributes of the files and of their archived version
+    private final ResultStore results;
+    private final Storage storage;
+    private final ArchiveCache archiveCache;
+    private final PolicyStatistics policyStatistics = new PolicyStatistics();
+    private ArchiveIndex archiveIndex = null;
+    // content of the previous scan (incremental mode only) and of the current one
+    private ScanSnapshot previousSnapshot = null;
+    private ScanSnapshot snapshot = null;
+    private final LongAdder nbDirectoriesReused = new LongAdder();
+    private final LongAdder nbArchivesReused = new LongAdder();
+    // raw data directories compared as a whole with their archived version (folder-like only)
+    private final LongAdder nbFolders = new LongAdder();
+    private final LongAdder nbFoldersArchived = new LongAdder();
+    private final LongAdder nbFilesNotProbed = new LongAdder();
+    // directories that have not been read at all
+    private final LongAdder nbDirectoriesExcluded = new LongAdder();
+    private final LongAdder nbDirectoriesTooDeep = new LongAdder();
+    // only the raw data of the date window are searched, null to search them all
+    private final DateWindow dateWindow;
+    private final LongAdder nbDirectoriesOutOfWindow = new LongAdder();
+    private final LongAdder nbFoldersOutOfWindow = new LongAdder();
+    private final LongAdder nbFilesOutOfWindow = new LongAdder();
     private final File parentDirectory;
+    private ScanListener listener = null;
+    private ProgressListener progressListener = null;
+    private Consumer<RawData> rawDataListener = null;
+    private ScanProgress progress = null;
+    // content verification (optional)
+    private ChecksumVerifier verifier = null;
+    private ChecksumStore checksumStore = null;
+    // steps following the listing of the directories, only available during the scan
+    private PipelineStage<ScanItem> classifyStage = null;
+    private PipelineStage<ScanItem> probeStage = null;
+    private PipelineStage<ScanItem> verifyStage = null;
+    private PipelineStage<ScanItem> emitStage = null;
+    // set when the scan has been cancelled, the results are then incomplete
+    private volatile boolean isCancelled = false;
+
+    /**
+     * A file going through the steps of the scan
+     */
+    private static class ScanItem {
+        final FileInfo file;
+        final String rawParentName;
+        final ScanSnapshot.FileState state;
+        FileInfo archive;
+        // found with the archived version of the whole raw data directory
+        FileInfo folderArchive = null;
+        String rawFileName;
+        Boolean checksumMatch = null;
+        // row of the file in the results
+        int row = -1;
+        // the files of a raw data directory go through the first steps as a single item, until its archive has been searched
+        final File folder;
+        final List<ScanItem> folderItems;
+
+        ScanItem(FileInfo _file, String _rawParentName, ScanSnapshot.FileState _state, FileInfo _previousArchive) {
+            file = _file;
+            rawParentName = _rawParentName;
+            state = _state;
+            archive = _previousArchive;
+            folder = null;
+            folderItems = null;
+        }
+
+        ScanItem(File _folder, List<ScanItem> _folderItems) {
+            file = null;
+            rawParentName = null;
+            state = null;
+            folder = _folder;
+            folderItems = _folderItems;
+        }
+    }
 
     public DataParser(File _parentDirectory) {
+        this(_parentDirectory, Global.USE_NATIVE_LISTING ? NativeStorage.getInstance() : LocalStorage.INSTANCE);
+    }
+
+    /**
+     * @param _storage where the data and archive directories are read (the archive index and the checksums still use the local file system)
+     */
+    public DataParser(File _parentDirectory, Storage _storage) {
         parentDirectory = _parentDirectory;
+        storage = _storage;
+        archiveCache = new ArchiveCache(Global.ARCHIVE_CACHE_SIZE, storage);
+        results = new ResultStore(Global.RAW_DATA_DIRECTORY, Global.RAW_DATA_ARCHIVES);
+        dateWindow = DateWindow.parse(Global.DATE_WINDOW_TYPE, Global.DATE_WINDOW_START, Global.DATE_WINDOW_END);
+    }
+
+    /**
+     * @param _listener receives each raw file as soon as it has been searched in the archives
+     */
+    public void setScanListener(ScanListener _listener) {
+        listener = _listener;
+    }
+
+    /**
+     * @param _progressListener receives the progress of the scan a few times per second
+     */
+    public void setProgressListener(ProgressListener _progressListener) {
+        progressListener = _progressListener;
+    }
+
+    /**
+     * @param _rawDataListener receives each raw data as soon as its first file has been searched in the archives,
+     *                         its content keeps changing until the end of the scan. It is called from the scan threads.
+     */
+    public void setRawDataListener(Consumer<RawData> _rawDataListener) {
+        rawDataListener = _rawDataListener;
     }
 
-    public void start() {
-        logger.info("Parsing data directory");
-        readDirectory(parentDirectory);
+    public void start() throws InterruptedException {
+        if(Global.USE_ARCHIVE_INDEX) {
+            try {
+                // with a date window, only the months where its raw files may be archived are read again
+                archiveIndex = ArchiveIndex.open(new File(Global.REPORTS_DIRECTORY, Global.ARCHIVE_INDEX_FILE_NAME), Global.RAW_DATA_ARCHIVES,
+                        dateWindow != null ? dateWindow::isArchiveMonth : archiveMonth -> true);
+            } catch (IOException ioe) {
+                logger.warn("Archive index could not be loaded, archive directories will be read directly", ioe);
+            }
+        }
+        File snapshotFile = new File(Global.REPORTS_DIRECTORY, Global.SCAN_SNAPSHOT_FILE_NAME);
+        if(Global.INCREMENTAL_SCAN) {
+            previousSnapshot = ScanSnapshot.load(snapshotFile, parentDirectory);
+            snapshot = new ScanSnapshot(parentDirectory);
+        }
+        if(Global.VERIFY_CHECKSUMS) {
+            try {
+                checksumStore = ChecksumStore.open(new File(Global.REPORTS_DIRECTORY, Global.CHECKSUM_STORE_FILE_NAME));
+            } catch (IOException ioe) {
+                logger.warn("Checksum store could not be opened, all the files will be read", ioe);
+            }
+            verifier = new ChecksumVerifier(checksumStore);
+        }
+        File totalsFile = new File(Global.REPORTS_DIRECTORY, Global.SCAN_TOTALS_FILE_NAME);
+        progress = ScanProgress.load(totalsFile, parentDirectory);
+        ProgressReporter reporter = new ProgressReporter(logger, progress::getProgress, progress::getMessage, progressListener);
+        if(dateWindow != null) logger.info("Only the raw data with a " + dateWindow + " are searched");
+        logger.info("Parsing data directory using " + Global.NB_THREADS + " threads, archives are searched using " + Global.NB_PROBE_THREADS + " threads");
+        // each step has its own workers, the steps are created from the last one so each step can feed the next one
+        if(listener != null) emitStage = new PipelineStage<>("emit", 1, Global.PIPELINE_QUEUE_SIZE, this::emit);
+        if(verifier != null) verifyStage = new PipelineStage<>("verify", Global.NB_VERIFY_THREADS, Global.PIPELINE_QUEUE_SIZE, this::verify);
+        probeStage = new PipelineStage<>("probe", Global.NB_PROBE_THREADS, Global.PIPELINE_QUEUE_SIZE, this::probe);
+        classifyStage = new PipelineStage<>("classify", 1, Global.PIPELINE_QUEUE_SIZE, this::classify);
+        ForkJoinPool pool = new ForkJoinPool(Global.NB_THREADS);
+        boolean isInterrupted = false;
+        Throwable error = null;
+        try {
+            // the ancestors of the data directory are only checked once, the raw data name is then passed down to each task
+            DirectoryTask root = new DirectoryTask(parentDirectory, null, Global.IS_FOLDER_LIKE ? Global.getRawParentName(parentDirectory) : "", null, 0);
+            pool.execute(root);
+            try {
+                root.get();
+            } catch (InterruptedException ie) {
+                // an interruption of the calling thread cancels the scan, then the tasks still running are waited for
+                isInterrupted = true;
+                cancel();
+                root.quietlyJoin();
+            } catch (ExecutionException ee) {
+                error = ee.getCause();
+            }
+        } catch (Throwable t) {
+            error = t;
+        }
+        pool.shutdown();
+        // then wait for each step to process the remaining files, in order: each step is finished even if a previous
+        // one has failed, so no worker is left waiting, and the first error is thrown once everything is closed
+        error = finishStep(error, classifyStage::finish);
+        error = finishStep(error, probeStage::finish);
+        if(verifyStage != null) error = finishStep(error, verifyStage::finish);
+        if(emitStage != null) error = finishStep(error, emitStage::finish);
+        if(verifier != null) error = finishStep(error, verifier::finish);
+        if(checksumStore != null) error = finishStep(error, this::closeChecksumStore);
+        error = finishStep(error, results::complete);
+        if(!isCancelled) error = finishStep(error, progress::finish);
+        error = finishStep(error, reporter::close);
+        if(error != null) {
+            if(error instanceof InterruptedException) throw (InterruptedException) error;
+            if(error instanceof RuntimeException) throw (RuntimeException) error;
+            if(error instanceof Error) throw (Error) error;
+            throw new RuntimeException(error);
+        }
+        // the totals of a partial scan would make the estimation of the next complete scan wrong
+        if(!isCancelled && dateWindow == null) progress.save(totalsFile, parentDirectory);
+        // a partial snapshot would make the next incremental scan skip the directories that have not been read
+        if(snapshot != null && !isCancelled) snapshot.save(snapshotFile);
         HashMap<String, Integer> countPerStatus = getCountPerStatus();
-        logger.info("Data directory is parsed\n\nRawFinder search summary:\n" +
+        logger.info((isCancelled ? "Data directory parsing has been cancelled, the results are incomplete" : "Data directory is parsed") + "\n\nRawFinder search summary:\n" +
         "- Number of fully archived raw data: " + countPerStatus.getOrDefault(Status.FULLY_ARCHIVED.toString(), 0) + "\n" +
         "- Number of partially archived raw data: " + countPerStatus.getOrDefault(Status.PARTIALLY_ARCHIVED.toString(), 0) + "\n" +
-        "- Number of raw data not archived at all: " + countPerStatus.getOrDefault(Status.NOT_ARCHIVED.toString(), 0) + "\n");
+        "- Number of raw data not archived at all: " + countPerStatus.getOrDefault(Status.NOT_ARCHIVED.toString(), 0) + "\n" +
+        (verifier != null ? "- Number of raw data with corrupted archives: " + countPerStatus.getOrDefault(Status.CORRUPTED.toString(), 0) + "\n" + verifier.getSummary() : "") +
+        (checksumStore != null ? checksumStore.getSummary() : "") +
+        (archiveIndex != null ? archiveIndex.getSummary() : "") +
+        archiveCache.getSummary() +
+        policyStatistics.getSummary() +
+        (nbDirectoriesExcluded.sum() + nbDirectoriesTooDeep.sum() > 0 ? "- Directories not read: " + nbDirectoriesExcluded.sum() + " excluded, " + nbDirectoriesTooDeep.sum() + " beyond the maximum depth\n" : "") +
+        (dateWindow != null ? "- Out of the date window: " + nbDirectoriesOutOfWindow.sum() + " raw data directories not read, " + nbFoldersOutOfWindow.sum() + " raw data directories and " + nbFilesOutOfWindow.sum() + " raw files not searched\n" : "") +
+        (nbFolders.sum() > 0 ? "- Raw data directories: " + nbFoldersArchived.sum() + " of " + nbFolders.sum() + " found intact in the archives, " + nbFilesNotProbed.sum() + " files not searched one by one\n" : "") +
+        (previousSnapshot != null ? "- Incremental scan: " + nbDirectoriesReused.sum() + " unchanged directories and " + nbArchivesReused.sum() + " archived files reused from the previous scan\n" : ""));
+        if(isInterrupted) Thread.currentThread().interrupt();
     }
 
-    private void readDirectory(File directory) {
-        // read raw-like directories first (recursive call)
-        Arrays.stream(Objects.requireNonNull(directory.listFiles())).filter(File::isDirectory).forEach(this::readDirectory);
+    private interface FinishStep {
+        void run() throws Exception;
+    }
+
+    /**
+     * Runs a step of the end of the scan, even if a previous one has failed
+     * @param error the first error met so far, or null
+     * @return the first error met so far, the following ones are added to it as suppressed
+     */
+    private static Throwable finishStep(Throwable error, FinishStep step) {
+        try {
+            step.run();
+        } catch (Throwable t) {
+            if(error == null) return t;
+            error.addSuppressed(t);
+        }
+        return error;
+    }
 
-        // read raw-like files then (search archive files)
-        Arrays.stream(Objects.requireNonNull(directory.listFiles())).filter(file -> file.isFile() && Global.IsRawData(file)).forEach(item -> {
-            File archive = findArchive(item);
-            data.put(item, archive);
+    /**
+     * Stops the scan as soon as possible, the results gathered so far are kept.
+     * Directories that have not been read yet are skipped, and the files waiting in the steps are dropped.
+     */
+    public void cancel() {
+        isCancelled = true;
+        if(verifier != null) verifier.cancel();
+    }
 
-            // also feed the rawData hashmap
-            String currentRawFileName = Global.getRawFileName(item);
-            if(!rawData.containsKey(currentRawFileName)) rawData.put(currentRawFileName, new RawData(new File(currentRawFileName)));
-            rawData.get(currentRawFileName).addFile(item, archive != null);
+    private boolean isCancelled() {
+        return isCancelled || Thread.currentThread().isInterrupted();
+    }
 
-            if(rawData.size() % 100 == 0) logger.info(rawData.size() + " raw files found...");
-        });
+    /**
+     * @return false if the scan has been cancelled before the end
+     */
+    public boolean isComplete() {
+        return !isCancelled;
     }
 
-    private File getArchive(File file, Policy policy) {
-        String path = "";
+    private void closeChecksumStore() {
         try {
-            if(policy.equals(Policy.MODIFICATION_DATE)) {
-                LocalDateTime localDateTime = LocalDateTime.ofEpochSecond(file.lastModified(), 0, ZoneOffset.MIN);
-                path = Global.RAW_DATA_ARCHIVES.getAbsolutePath() + "/" + localDateTime.getYear() + "/" + Global.MONTH_NAMES[localDateTime.getMonthValue() - 1];
+            checksumStore.close();
+        } catch (IOException ioe) {
+            logger.warn("Checksum store could not be saved", ioe);
+        }
+    }
+
+    /**
+     * Reads one directory: each subdirectory becomes a new task that can be stolen by another worker,
+     * while the files of the current directory are sent to the next steps.
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final File directory;
+        private FileInfo attributes;
+        // name of the raw data directory containing this directory (or this directory itself), empty if none
+        private final String rawParentName;
+        // files of the raw data directory containing this directory, kept until the whole raw data directory has been read
+        private final List<ScanItem> folderItems;
+        private final boolean isFolderRoot;
+        // number of levels below the scanned directory
+        private final int depth;
+
+        DirectoryTask(File _directory, FileInfo _attributes, String _rawParentName, List<ScanItem> _folderItems, int _depth) {
+            directory = _directory;
+            attributes = _attributes;
+            rawParentName = _rawParentName;
+            depth = _depth;
+            // the outermost raw data directory gathers the files of all its subdirectories
+            isFolderRoot = _folderItems == null && Global.IS_FOLDER_LIKE && !rawParentName.isEmpty();
+            folderItems = isFolderRoot ? Collections.synchronizedList(new ArrayList<>()) : _folderItems;
+        }
+
+        private DirectoryTask getSubTask(File subDirectory, FileInfo subAttributes) {
+            return new DirectoryTask(subDirectory, subAttributes, Global.IS_FOLDER_LIKE ? Global.getRawParentName(subDirectory.getName(), rawParentName) : "", folderItems, depth + 1);
+        }
+
+        /**
+         * @return true if the directory must not be read, it is counted then
+         */
+        private boolean isPruned() {
+            if(depth == 0) return false;
+            // the content of a raw data directory is always read entirely
+            if(Global.MAX_DEPTH > 0 && depth > Global.MAX_DEPTH && rawParentName.isEmpty()) {
+                nbDirectoriesTooDeep.increment();
+                return true;
+            }
+            if(Global.isExcluded(parentDirectory.toPath().relativize(directory.toPath()))) {
+                nbDirectoriesExcluded.increment();
+                return true;
+            }
+            // the raw data are written once: a raw data directory not modified since the start of the window only contains older files
+            if(dateWindow != null && isFolderRoot) {
+                FileInfo directoryInfo = getAttributes();
+                if(directoryInfo != null && !dateWindow.mayContain(directoryInfo)) {
+                    nbDirectoriesOutOfWindow.increment();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected void compute() {
+            // the parent directory still knows this directory, so the snapshot stays complete if the settings change
+            if(isCancelled() || isPruned()) return;
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            List<FileInfo> files = new ArrayList<>();
+            // state of each file in the previous scan, in the same order as the files (incremental mode only)
+            List<ScanSnapshot.FileState> previousFiles = new ArrayList<>();
+            ScanSnapshot.DirectoryState previousState = getPreviousState();
+            ScanSnapshot.DirectoryState state = new ScanSnapshot.DirectoryState();
+            // false if an item could not be read, the directory is then not kept in the snapshot
+            boolean isComplete = true;
+            if(previousState != null) {
+                // the directory has not changed since the previous scan, no need to list it again
+                nbDirectoriesReused.increment();
+                previousState.subDirectories.forEach(name -> subTasks.add(getSubTask(new File(directory, name), null)));
+                // a file still being acquired or rewritten in place does not change the date of its directory, each file is read again
+                for(ScanSnapshot.FileState previousFile : previousState.files) {
+                    if(isCancelled()) return;
+                    File file = new File(directory, previousFile.name);
+                    try {
+                        FileInfo item = storage.read(file);
+                        if(item == null) continue;
+                        files.add(item);
+                        previousFiles.add(previousFile);
+                    } catch (IOException ioe) {
+                        logger.warn("File " + file.getAbsolutePath() + " could not be read", ioe);
+                        isComplete = false;
+                    }
+                }
             } else {
-                DosFileAttributes attributes = Files.readAttributes(file.toPath(), DosFileAttributes.class);
-                LocalDateTime localDateTime = LocalDateTime.ofInstant(attributes.creationTime().toInstant(), ZoneId.systemDefault());
-                int year = localDateTime.getYear();
-                int month = localDateTime.getMonthValue();
-                if (policy.equals(Policy.CREATION_DATE)) {
-                    path = Global.RAW_DATA_ARCHIVES.getAbsolutePath() + "/" + year + "/" + Global.MONTH_NAMES[month - 1];
-                } else if (policy.equals(Policy.NEXT_MONTH)) {
-                    if (month < Global.MONTH_NAMES.length) // January 2021 -> February 2021
-                        path = Global.RAW_DATA_ARCHIVES.getAbsolutePath() + "/" + year + "/" + Global.MONTH_NAMES[month];
-                    else // december 2020 -> january 2021
-                        path = Global.RAW_DATA_ARCHIVES.getAbsolutePath() + "/" + (year + 1) + "/" + Global.MONTH_NAMES[0];
+                // list the directory only once, and read the attributes of each item only once
+                try (DirectoryStream<FileInfo> stream = storage.list(directory)) {
+                    Iterator<FileInfo> items = stream.iterator();
+                    while(items.hasNext()) {
+                        if(isCancelled()) return;
+                        FileInfo item;
+                        try {
+                            item = items.next();
+                        } catch (DirectoryIteratorException die) {
+                            // only this item is lost, the other items of the directory are still read
+                            logger.warn("An item of directory " + directory.getAbsolutePath() + " could not be read", die.getCause());
+                            isComplete = false;
+                            continue;
+                        }
+                        if(item.isDirectory()) subTasks.add(getSubTask(item.getFile(), item));
+                        else files.add(item);
+                    }
+                } catch (IOException | DirectoryIteratorException e) {
+                    logger.warn("Directory " + directory.getAbsolutePath() + " could not be read", e);
+                    isComplete = false;
                 }
             }
-        } catch (IOException ioe) {
-            logger.warn("File " + file.getAbsolutePath() + ": creation date could not be read, can't retrieve archived version", ioe);
+            progress.nbDirectories.increment();
+            // fork raw-like directories first (recursive call)
+            subTasks.forEach(DirectoryTask::fork);
+
+            // send the files to the next steps (waits if they are late)
+            for(int i = 0; i < files.size(); i++) {
+                FileInfo file = files.get(i);
+                ScanSnapshot.FileState fileState = new ScanSnapshot.FileState(file);
+                FileInfo previousArchive = previousState != null ? previousFiles.get(i).getArchive(file) : null;
+                ScanItem item = new ScanItem(file, rawParentName, fileState, previousArchive);
+                if(folderItems != null) folderItems.add(item);
+                else classifyStage.put(item);
+                state.files.add(fileState);
+            }
+            // an incomplete listing would be reused as is by the next incremental scans, until the directory is modified
+            if(snapshot != null && attributes != null && isComplete) {
+                state.lastModified = attributes.getLastModifiedTime();
+                subTasks.forEach(task -> state.subDirectories.add(task.directory.getName()));
+                snapshot.put(directory, state);
+            }
+
+            // wait for the subdirectories (rethrows any exception raised in them)
+            subTasks.forEach(DirectoryTask::join);
+
+            if(isFolderRoot) {
+                if(isCancelled()) return;
+                // the raw data is searched as a whole if any of its raw files belongs to the window
+                if(dateWindow != null && folderItems.stream().noneMatch(item -> Global.IsRawData(item.file, item.rawParentName) && dateWindow.contains(item.file))) {
+                    nbFoldersOutOfWindow.increment();
+                    nbFilesOutOfWindow.add(folderItems.stream().filter(item -> Global.IsRawData(item.file, item.rawParentName)).count());
+                    return;
+                }
+                // the archived directory is searched by the probe step, with the other archive lookups
+                classifyStage.put(new ScanItem(directory, folderItems));
+            }
+        }
+
+        /**
+         * @return the attributes of this directory, read now if the listing of its parent has not given them
+         */
+        private FileInfo getAttributes() {
+            try {
+                if(attributes == null) attributes = storage.read(directory);
+            } catch (IOException ioe) {
+                logger.warn("Directory " + directory.getAbsolutePath() + " could not be read", ioe);
+            }
+            return attributes;
+        }
+
+        /**
+         * @return the content of this directory in the previous scan, if it has not been modified since
+         */
+        private ScanSnapshot.DirectoryState getPreviousState() {
+            if(snapshot == null) return null;
+            FileInfo directoryInfo = getAttributes();
+            if(previousSnapshot == null || directoryInfo == null) return null;
+            ScanSnapshot.DirectoryState previousState = previousSnapshot.get(directory);
+            return previousState != null && previousState.lastModified == directoryInfo.getLastModifiedTime() ? previousState : null;
+        }
+    }
+
+    /**
+     * Keeps the raw-like files only
+     */
+    private void classify(ScanItem item) {
+        if(isCancelled) return;
+        if(item.folderItems != null) {
+            // only the raw files are compared with the archived directory, the archive may not have the other ones
+            List<ScanItem> rawItems = new ArrayList<>();
+            for(ScanItem folderItem : item.folderItems) if(isRawFile(folderItem)) rawItems.add(folderItem);
+            if(!rawItems.isEmpty()) probeStage.put(new ScanItem(item.folder, rawItems));
+        } else if(isRawFile(item)) {
+            probeStage.put(item);
+        }
+    }
+
+    private boolean isRawFile(ScanItem item) {
+        progress.nbFiles.increment();
+        if(!Global.IsRawData(item.file, item.rawParentName)) return false;
+        // the raw data directories have already been checked as a whole
+        if(dateWindow != null && !Global.IS_FOLDER_LIKE && !dateWindow.contains(item.file)) {
+            nbFilesOutOfWindow.increment();
+            return false;
+        }
+        progress.nbRawFiles.increment();
+        item.rawFileName = Global.getRawFileName(item.file.getFile(), item.rawParentName);
+        return true;
+    }
+
+    /**
+     * Searches the archived version of a raw file, unless the previous scan has already found it
+     */
+    private void probe(ScanItem item) {
+        if(isCancelled) return;
+        if(item.folderItems != null) {
+            findFolderArchive(item.folder, item.folderItems);
+            for(ScanItem folderItem : item.folderItems) probe(folderItem);
+            return;
+        }
+        if(item.archive != null) nbArchivesReused.increment();
+        else if(item.folderArchive != null) item.archive = item.folderArchive;
+        else item.archive = findArchive(item.file);
+        progress.nbProbes.increment();
+        progress.nbBytes.add(item.file.getSize());
+        if(item.archive != null) item.state.setArchive(item.archive);
+        item.row = addFile(item.file, item.archive, item.rawFileName);
+        if(verifyStage != null && item.archive != null && item.archive.getSize() == item.file.getSize()) {
+            // only the files with the correct size are worth reading
+            verifyStage.put(item);
+        } else if(emitStage != null) {
+            emitStage.put(item);
         }
-        return new File(path, Global.RAW_DATA_DIRECTORY.toURI().relativize(file.toURI()).getPath());
     }
 
-    private File findArchive(File file) {
-        File mostProbableArchive = getArchive(file, Policy.CREATION_DATE);
-        File possibleArchive = getArchive(file, Policy.MODIFICATION_DATE);
-        File lastResortArchive = getArchive(file, Policy.NEXT_MONTH);
-        // return the correct match if any
-        if(mostProbableArchive.exists() && mostProbableArchive.length() == file.length()) return mostProbableArchive;
-        if(possibleArchive.exists() && possibleArchive.length() == file.length()) return possibleArchive;
-        if(lastResortArchive.exists() && lastResortArchive.length() == file.length()) return lastResortArchive;
+    private void verify(ScanItem item) {
+        if(isCancelled) return;
+        try {
+            item.checksumMatch = verifier.verify(item.file, item.archive);
+        } catch (CancellationException ce) {
+            // the file has not been completely read, it is considered as not verified
+            return;
+        }
+        results.setChecksumMatch(item.row, item.checksumMatch);
+        if(!item.checksumMatch) rawData.get(item.rawFileName).addCorruptedFile();
+        if(emitStage != null) emitStage.put(item);
+    }
+
+    private void emit(ScanItem item) {
+        if(isCancelled) return;
+        listener.fileFound(item.file, item.archive, item.rawFileName, item.checksumMatch);
+    }
+
+    /**
+     * @return the row of the file in the results
+     */
+    private int addFile(FileInfo item, FileInfo archive, String currentRawFileName) {
+        // feed the rawData hashmap first, each row refers to its raw data
+        RawData currentRawData = rawData.get(currentRawFileName);
+        // only lock the entry when the raw data is new
+        if(currentRawData == null) currentRawData = rawData.computeIfAbsent(currentRawFileName, this::newRawData);
+        currentRawData.addFile(item, archive != null);
+        return results.add(item, archive, currentRawData);
+    }
+
+    private RawData newRawData(String rawFileName) {
+        RawData newRawData = new RawData(rawFileName, statusCounts);
+        if(rawDataListener != null) rawDataListener.accept(newRawData);
+        return newRawData;
+    }
+
+    /**
+     * @return the month of the archive directory where the policy expects the file, as year * 12 + month
+     */
+    private static int getArchiveMonth(FileInfo file, Policy policy, int creationMonth) {
+        if(policy.equals(Policy.MODIFICATION_DATE)) {
+            LocalDateTime localDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(file.getLastModifiedTime()), ZoneId.systemDefault());
+            return localDateTime.getYear() * 12 + localDateTime.getMonthValue() - 1;
+        }
+        // January 2021 -> February 2021, december 2020 -> january 2021
+        return policy.equals(Policy.NEXT_MONTH) ? creationMonth + 1 : creationMonth;
+    }
+
+    private static int getCreationMonth(FileInfo file) {
+        LocalDateTime localDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(file.getCreationTime()), ZoneId.systemDefault());
+        return localDateTime.getYear() * 12 + localDateTime.getMonthValue() - 1;
+    }
+
+    private static File getArchive(String relativePath, int archiveMonth) {
+        String path = Global.RAW_DATA_ARCHIVES.getAbsolutePath() + "/" + (archiveMonth / 12) + "/" + Global.MONTH_NAMES[archiveMonth % 12];
+        return new File(path, relativePath);
+    }
+
+    /**
+     * Compares a raw data directory with its archived version as a whole: when each raw file has its archived version
+     * at the same place, with the same size, the files are not searched on their own. Otherwise, the files are searched
+     * one by one as usual.
+     * The archive index answers without reading the archives. Without it, or if it does not know a file, the archived
+     * directory is listed and only used when it has the same number of raw files and the same total size.
+     * @param items the raw files of the directory and of its subdirectories
+     */
+    private void findFolderArchive(File directory, List<ScanItem> items) {
+        // nothing to search if the previous scan has already found all the archives
+        if(items.stream().allMatch(item -> item.archive != null)) return;
+        nbFolders.increment();
+        // the archive month is the one of the oldest file, as the raw data date
+        FileInfo oldestFile = items.get(0).file;
+        for(ScanItem item : items) if(item.file.getCreationTime() < oldestFile.getCreationTime()) oldestFile = item.file;
+        String relativePath = Global.RAW_DATA_DIRECTORY.toPath().relativize(directory.toPath()).toString();
+        int creationMonth = getCreationMonth(oldestFile);
+        for(Policy policy : policyStatistics.getOrder(PolicyStatistics.getSubtree(relativePath))) {
+            File archiveFolder = getArchive(relativePath, getArchiveMonth(oldestFile, policy, creationMonth));
+            List<FileInfo> archives = archiveIndex != null ? getIndexedFolderArchives(directory, archiveFolder, items) : null;
+            if(archives == null) archives = getListedFolderArchives(directory, archiveFolder, items);
+            if(archives == null) continue;
+            for(int i = 0; i < items.size(); i++) items.get(i).folderArchive = archives.get(i);
+            nbFoldersArchived.increment();
+            nbFilesNotProbed.add(items.size());
+            return;
+        }
+    }
+
+    /**
+     * @return the archived version of each file as known by the archive index, or null if any of them is unknown or has another size
+     */
+    private List<FileInfo> getIndexedFolderArchives(File directory, File archiveFolder, List<ScanItem> items) {
+        List<FileInfo> archives = new ArrayList<>();
+        for(ScanItem item : items) {
+            FileInfo archive = archiveIndex.get(new File(archiveFolder, directory.toPath().relativize(item.file.getFile().toPath()).toString()));
+            if(archive == null || archive.getSize() != item.file.getSize()) return null;
+            archives.add(archive);
+        }
+        return archives;
+    }
+
+    /**
+     * @return the archived version of each file, read from the listing of the archived directory, or null if it does not match
+     */
+    private List<FileInfo> getListedFolderArchives(File directory, File archiveFolder, List<ScanItem> items) {
+        // the listing of the parent directory is cached, it avoids reading the archived directories that do not exist
+        FileInfo archiveFolderInfo = archiveCache.get(archiveFolder);
+        if(archiveFolderInfo == null || !archiveFolderInfo.isDirectory()) return null;
+        Map<String, FileInfo> archivedFiles = new HashMap<>();
+        long nbArchivedBytes = listFolder(archiveFolder, "", directory.getName(), archivedFiles);
+        long nbBytes = 0;
+        for(ScanItem item : items) nbBytes += item.file.getSize();
+        if(archivedFiles.size() != items.size() || nbArchivedBytes != nbBytes) return null;
+        // same count and size, each file should have its archived version at the same place
+        List<FileInfo> archives = new ArrayList<>();
+        for(ScanItem item : items) {
+            FileInfo archive = archivedFiles.get(getFolderKey(directory.toPath().relativize(item.file.getFile().toPath()).toString()));
+            if(archive == null || archive.getSize() != item.file.getSize()) return null;
+            archives.add(archive);
+        }
+        return archives;
+    }
+
+    /**
+     * Lists the raw files of an archived raw data directory and of its subdirectories
+     * @return the total size of the files
+     */
+    private long listFolder(File directory, String relativePath, String rawParentName, Map<String, FileInfo> files) {
+        long nbBytes = 0;
+        try (DirectoryStream<FileInfo> stream = storage.list(directory)) {
+            Iterator<FileInfo> items = stream.iterator();
+            while(items.hasNext()) {
+                FileInfo item;
+                try {
+                    item = items.next();
+                } catch (DirectoryIteratorException die) {
+                    // a raw file left out makes the counts differ, the files are then searched one by one
+                    logger.warn("An item of archive directory " + directory.getAbsolutePath() + " could not be read", die.getCause());
+                    continue;
+                }
+                String itemPath = relativePath.isEmpty() ? item.getName() : relativePath + File.separator + item.getName();
+                if(item.isDirectory()) {
+                    nbBytes += listFolder(item.getFile(), itemPath, rawParentName, files);
+                } else if(Global.IsRawData(item, rawParentName)) {
+                    files.put(getFolderKey(itemPath), item);
+                    nbBytes += item.getSize();
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            logger.warn("Archive directory " + directory.getAbsolutePath() + " could not be read", e);
+        }
+        return nbBytes;
+    }
+
+    private String getFolderKey(String relativePath) {
+        return ArchiveCache.IS_CASE_INSENSITIVE ? relativePath.toLowerCase(Locale.ROOT) : relativePath;
+    }
+
+    /**
+     * @param size size of the raw file, an archive of another size found in the index is read again
+     */
+    private FileInfo getArchiveInfo(File archive, long size) {
+        // the archive is append-only, so a file known by the index is still there
+        if(archiveIndex != null) {
+            FileInfo archiveInfo = archiveIndex.get(archive);
+            // a file rewritten deep inside a month directory does not change the date of the month directory
+            if(archiveInfo != null && archiveInfo.getSize() == size) return archiveInfo;
+        }
+        // the archive directories are listed once, then the candidates are answered from memory
+        return archiveCache.get(archive);
+    }
+
+    // package-private so it can be measured by the benchmarks
+    FileInfo findArchive(FileInfo file) {
+        // File.toURI would ask the file system whether each path is a directory
+        String relativePath = Global.RAW_DATA_DIRECTORY.toPath().relativize(file.getFile().toPath()).toString();
+        String subtree = PolicyStatistics.getSubtree(relativePath);
+        // the creation date is converted only once, for both policies using it
+        int creationMonth = getCreationMonth(file);
+        FileInfo[] candidates = new FileInfo[Policy.values().length];
+        int nbProbes = 0;
+        // try the policy that has found the most archives in this subtree first, and stop at the first correct match
+        for(Policy policy : policyStatistics.getOrder(subtree)) {
+            FileInfo candidate = getArchiveInfo(getArchive(relativePath, getArchiveMonth(file, policy, creationMonth)), file.getSize());
+            policyStatistics.addProbe(policy);
+            nbProbes++;
+            if(candidate != null && candidate.getSize() == file.getSize()) {
+                policyStatistics.addResult(subtree, policy, nbProbes);
+                return candidate;
+            }
+            candidates[policy.ordinal()] = candidate;
+        }
+        policyStatistics.addResult(subtree, null, nbProbes);
         // if there is no correct match return the latest existing one
-        if(lastResortArchive.exists()) return lastResortArchive;
-        if(possibleArchive.exists()) return possibleArchive;
-        if(mostProbableArchive.exists()) return mostProbableArchive;
+        if(candidates[Policy.NEXT_MONTH.ordinal()] != null) return candidates[Policy.NEXT_MONTH.ordinal()];
+        if(candidates[Policy.MODIFICATION_DATE.ordinal()] != null) return candidates[Policy.MODIFICATION_DATE.ordinal()];
         // if nothing exists at all, return null
-        return null;
+        return candidates[Policy.CREATION_DATE.ordinal()];
     }
 
-    public HashMap<File, File> getData() {
-        return data;
+    /**
+     * @return the raw files found by the scan, they should only be read once the scan is over
+     */
+    public ResultStore getResults() {
+        return results;
     }
 
-    public HashMap<String, RawData> getAsRawData() {
+    public Map<String, RawData> getAsRawData() {
         return rawData;
     }
 
+    public boolean isChecksumVerified() {
+        return verifier != null;
+    }
+
+    /**
+     * @return the number of raw data per status name, kept up to date during the scan
+     */
     public HashMap<String, Integer> getCountPerStatus() {
-        HashMap<String, Integer> countPerStatus = new HashMap<>();
-        rawData.keySet().forEach( name -> {
-            String status = rawData.get(name).getStatus();
-            countPerStatus.put(status, countPerStatus.containsKey(status) ? countPerStatus.get(status) + 1 : 1);
-        });
-        return countPerStatus;
+        return statusCounts.toMap();
     }
 }
@@ -3,18 +3,56 @@ package fr.lsmbo.rawfinder;
 import javafx.concurrent.Task;
 
 import java.io.File;
+import java.util.function.Consumer;
 
 public class DataParserThread extends Task<DataParser> {
 
     private File parentDirectory;
+    private volatile DataParser parser;
+    private volatile boolean isCancelled = false;
+    private Consumer<RawData> rawDataListener = null;
+    private volatile RawDataIndex index = null;
 
     public void setParentDirectory(File _parentDirectory) {
         parentDirectory = _parentDirectory;
     }
 
+    /**
+     * @param _rawDataListener receives each raw data as soon as it is found, from the scan threads
+     */
+    public void setRawDataListener(Consumer<RawData> _rawDataListener) {
+        rawDataListener = _rawDataListener;
+    }
+
+    /**
+     * Stops the scan but keeps the task going, so the partial result is still returned
+     * (a cancelled Task does not give any result)
+     */
+    public void cancelScan() {
+        isCancelled = true;
+        if(parser != null) parser.cancel();
+    }
+
     public DataParser call() throws Exception {
-        DataParser parser = new DataParser(parentDirectory);
+        parser = new DataParser(parentDirectory);
+        // the progress is published to the progress and message properties of the task
+        parser.setProgressListener((progress, message) -> {
+            updateProgress(progress, 1);
+            updateMessage(message);
+        });
+        parser.setRawDataListener(rawDataListener);
+        // the scan may have been cancelled before the parser exists
+        if(isCancelled) parser.cancel();
         parser.start();
+        // the index is built here to keep this work away from the JavaFX thread
+        index = new RawDataIndex(parser.getAsRawData().values());
         return parser;
     }
+
+    /**
+     * @return the index of the results, once the task has succeeded
+     */
+    public RawDataIndex getIndex() {
+        return index;
+    }
 }
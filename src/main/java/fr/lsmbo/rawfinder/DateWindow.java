@@ -0,0 +1,99 @@
+package fr.lsmbo.rawfinder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Dates of the raw files to search, on their creation date or on their modification date.
+ * The first and last days are included, each of them may be left out for an open window.
+ *
+ * The raw files are written once, so a directory that has not been modified since the beginning of the window
+ * can not contain any raw file of the window: it does not have to be read at all.
+ */
+public class DateWindow {
+
+    public enum Type {
+        CREATION ("creation"),
+        MODIFICATION ("modification");
+        private final String name;
+        Type(String type) { name = type; }
+        public String toString() { return this.name; }
+    }
+
+    private final Type type;
+    // in milliseconds, the end is excluded
+    private final long start;
+    private final long end;
+
+    public DateWindow(Type _type, long _start, long _end) {
+        type = _type;
+        start = _start;
+        end = _end;
+    }
+
+    /**
+     * @param type "creation" or "modification", the scan is complete if it is empty
+     * @param firstDay first day of the window (yyyy-MM-dd), the window has no start if it is empty
+     * @param lastDay last day of the window (yyyy-MM-dd), the window has no end if it is empty
+     * @return the date window, or null if there is none
+     * @throws IllegalArgumentException if the type or the days are not valid
+     */
+    public static DateWindow parse(String type, String firstDay, String lastDay) {
+        if(type == null || type.isEmpty()) return null;
+        Type windowType = null;
+        for(Type value : Type.values()) if(value.toString().equalsIgnoreCase(type)) windowType = value;
+        if(windowType == null) throw new IllegalArgumentException("Unknown date window type '" + type + "'");
+        long start = firstDay == null || firstDay.isEmpty() ? Long.MIN_VALUE : getStartOfDay(firstDay, 0);
+        // the last day is included
+        long end = lastDay == null || lastDay.isEmpty() ? Long.MAX_VALUE : getStartOfDay(lastDay, 1);
+        if(end <= start) throw new IllegalArgumentException("The date window ends before it starts");
+        return new DateWindow(windowType, start, end);
+    }
+
+    private static long getStartOfDay(String day, int nbDaysAfter) {
+        try {
+            return LocalDate.parse(day).plusDays(nbDaysAfter).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException dtpe) {
+            throw new IllegalArgumentException("Day '" + day + "' is not formatted as yyyy-MM-dd", dtpe);
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean contains(FileInfo file) {
+        long date = type == Type.CREATION ? file.getCreationTime() : file.getLastModifiedTime();
+        return date >= start && date < end;
+    }
+
+    /**
+     * @param directory attributes of a raw data directory
+     * @return false if the directory has not been modified since the beginning of the window
+     */
+    public boolean mayContain(FileInfo directory) {
+        // a later modification date says nothing about the end of the window, the files may be older
+        return directory.getLastModifiedTime() >= start;
+    }
+
+    /**
+     * Tells whether an archive month directory may contain the archive of a raw file of the window: the month of
+     * its date, or the next one. The raw files are written once, so both dates fall in the same months.
+     * @param archiveMonth year * 12 + month, as used by the data parser
+     */
+    public boolean isArchiveMonth(int archiveMonth) {
+        return (start == Long.MIN_VALUE || archiveMonth >= getMonth(start)) && (end == Long.MAX_VALUE || archiveMonth <= getMonth(end - 1) + 1);
+    }
+
+    private static int getMonth(long time) {
+        LocalDateTime localDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        return localDateTime.getYear() * 12 + localDateTime.getMonthValue() - 1;
+    }
+
+    public String toString() {
+        return (type + " date " + (start == Long.MIN_VALUE ? "" : "from " + Global.simpleFormatDate2(start) + " ") + (end == Long.MAX_VALUE ? "" : "until " + Global.simpleFormatDate2(end - 1))).trim();
+    }
+}
@@ -0,0 +1,62 @@
+package fr.lsmbo.rawfinder;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Directories left out of the scan, given as glob patterns (the default, or with a 'glob:' prefix)
+ * or as regular expressions (with a 'regex:' prefix).
+ * A glob without any '/' is matched against the name of the directory, the other patterns are matched against
+ * the path of the directory within the scanned directory, with '/' as separator (ie. 'glob:inst1/Methods' or 'regex:(.+/)?tmp_[0-9]+').
+ */
+public class ExclusionMatcher {
+
+    private static final String GLOB_PREFIX = "glob:";
+    private static final String REGEX_PREFIX = "regex:";
+
+    private final List<String> patterns;
+    private final List<PathMatcher> nameMatchers = new ArrayList<>();
+    private final List<PathMatcher> pathMatchers = new ArrayList<>();
+    // all the regular expressions compiled into a single one, null if there is none
+    private final Pattern regex;
+
+    public ExclusionMatcher(List<String> _patterns) {
+        patterns = _patterns;
+        List<String> regexes = new ArrayList<>();
+        for(String pattern : patterns) {
+            if(pattern.startsWith(REGEX_PREFIX)) {
+                regexes.add(pattern.substring(REGEX_PREFIX.length()));
+            } else {
+                String glob = pattern.startsWith(GLOB_PREFIX) ? pattern.substring(GLOB_PREFIX.length()) : pattern;
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher(GLOB_PREFIX + glob);
+                if(glob.contains("/")) pathMatchers.add(matcher);
+                else nameMatchers.add(matcher);
+            }
+        }
+        regex = regexes.isEmpty() ? null : Pattern.compile(regexes.stream().map(expression -> "(?:" + expression + ")").collect(Collectors.joining("|")));
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    public boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    /**
+     * @param relativePath path of a directory within the scanned directory, the scanned directory itself (an empty path) is never matched
+     */
+    public boolean matches(Path relativePath) {
+        Path name = relativePath.getFileName();
+        if(name == null || name.toString().isEmpty()) return false;
+        for(PathMatcher matcher : nameMatchers) if(matcher.matches(name)) return true;
+        for(PathMatcher matcher : pathMatchers) if(matcher.matches(relativePath)) return true;
+        return regex != null && regex.matcher(relativePath.toString().replace(relativePath.getFileSystem().getSeparator(), "/")).matches();
+    }
+}
@@ -1,34 +1,63 @@
 package fr.lsmbo.rawfinder;
 
+import org.apache.poi.common.usermodel.HyperlinkType;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.stream.Collectors;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Export {
 
     protected final Logger logger = LoggerFactory.getLogger(Export.class);
-    private final HashMap<File, File> data;
-    private final HashMap<String, RawData> rawData;
+    private final ResultStore results;
+    private final DataParser parser;
     private final HashMap<String, Integer> countPerStatus;
+    private final boolean isChecksumVerified;
+    private ProgressListener progressListener = null;
+    // updated by the threads writing the reports
+    private final LongAdder nbFilesWritten = new LongAdder();
+    // number of rows kept in memory while writing, older rows are flushed to a temporary file
+    private static final int ROW_WINDOW_SIZE = 100;
+    // maximum number of rows in a XLSX sheet, minus the rows describing the environment
+    private static final int MAX_ROWS_PER_SHEET = 1048576 - 15;
+    private static final String[] HEADERS = new String[] { "Raw file name", "Local file path", "Local file size", "Local file size (bytes)",
+            "Local file creation date", "Local file last modification date", "Archived file path", "Archived file size (bytes)",
+            "Archived file creation date", "Size match", "Raw file is completely archived", "Raw file status" };
+    private static final String CHECKSUM_HEADER = "Checksum match";
+    private static final String[] SUMMARY_HEADERS = new String[] { "Report file", "First raw data", "Last raw data", "Number of files",
+            "Raw data fully archived", "Raw data of partially archived", "Raw data not archived" };
+    private static final String CORRUPTED_SUMMARY_HEADER = "Raw data with corrupted archives";
 
     public Export(DataParser parserResult) {
-        data = parserResult.getData();
-        rawData = parserResult.getAsRawData();
+        parser = parserResult;
+        results = parserResult.getResults();
         countPerStatus = parserResult.getCountPerStatus();
+        isChecksumVerified = parserResult.isChecksumVerified();
+    }
+
+    /**
+     * @param _progressListener receives the progress of the export a few times per second
+     */
+    public void setProgressListener(ProgressListener _progressListener) {
+        progressListener = _progressListener;
     }
 
     public static String getDefaultFileName() {
-        String host = Global.getHostname();
-        String time = Global.simpleFormatDate(new Date().getTime());
-        return "RawFinder-"+host+"-"+time+".xlsx";
+        return ExportFormat.XLSX.getDefaultFileName();
     }
 
     public void start() throws Throwable {
@@ -36,167 +65,241 @@ public class Export {
     }
 
     public void start(File excelFile) throws Throwable {
-        // generate excel output
-        String host = Global.getHostname();
-        String time = Global.simpleFormatDate(new Date().getTime());
-        // creation of the excel object
         logger.info("Writing Excel output file");
-        Workbook workbook = new XSSFWorkbook();
-        CreationHelper createHelper = workbook.getCreationHelper();
-        Sheet sheet = workbook.createSheet(host+" "+time);
-        int rowNum = 0;
+        // count how many files per raw data are missing or with a wrong size (only useful when folder-like) before writing anything
+        int[] sortedFiles = results.getSortedRows();
+        HashMap<String, Integer> missingOrIncorrectArchives = new HashMap<>();
+        for(int file : sortedFiles) {
+            boolean isCorrect = results.hasArchive(file) && results.getSize(file) == results.getArchiveSize(file) && !Boolean.FALSE.equals(results.getChecksumMatch(file));
+            missingOrIncorrectArchives.merge(results.getRawFileName(file), isCorrect ? 0 : 1, Integer::sum);
+        }
+
+        List<int[]> shards = getShards(sortedFiles);
+        DecimalFormat format = new DecimalFormat("#,##0");
+        ProgressReporter reporter = new ProgressReporter(logger, () -> sortedFiles.length == 0 ? 1 : nbFilesWritten.doubleValue() / sortedFiles.length,
+                () -> format.format(nbFilesWritten.sum()) + " of " + format.format(sortedFiles.length) + " files written", progressListener);
+        try {
+            writeReports(excelFile, sortedFiles, shards, missingOrIncorrectArchives);
+        } finally {
+            reporter.close();
+        }
+    }
 
-        // prepare styles
-        CellStyle headerStyle = workbook.createCellStyle();
-        headerStyle.setBorderTop(BorderStyle.MEDIUM);
-        headerStyle.setTopBorderColor(IndexedColors.BLACK.getIndex());
-        headerStyle.setBorderBottom(BorderStyle.MEDIUM);
-        headerStyle.setBottomBorderColor(IndexedColors.BLACK.getIndex());
-        headerStyle.setBorderLeft(BorderStyle.MEDIUM);
-        headerStyle.setLeftBorderColor(IndexedColors.BLACK.getIndex());
-        headerStyle.setBorderRight(BorderStyle.MEDIUM);
-        headerStyle.setRightBorderColor(IndexedColors.BLACK.getIndex());
-        Font font = workbook.createFont();
-        font.setBold(true);
-        headerStyle.setFont(font);
-        CellStyle topStyle = workbook.createCellStyle();
-        topStyle.setBorderTop(BorderStyle.MEDIUM);
-        topStyle.setTopBorderColor(IndexedColors.BLACK.getIndex());
-        CellStyle topDateStyle = workbook.createCellStyle();
-        topDateStyle.cloneStyleFrom(topStyle);
-        topDateStyle.setDataFormat(createHelper.createDataFormat().getFormat("dd mmmm yyyy hh:mm:ss"));
-        CellStyle defaultDateStyle = workbook.createCellStyle();
-        defaultDateStyle.setDataFormat(createHelper.createDataFormat().getFormat("dd mmmm yyyy hh:mm:ss"));
-        CellStyle defaultStyle = workbook.createCellStyle();
+    private void writeReports(File excelFile, int[] sortedFiles, List<int[]> shards, Map<String, Integer> missingOrIncorrectArchives) throws Throwable {
+        if(shards.size() == 1) {
+            writeReport(excelFile, sortedFiles, countPerStatus, missingOrIncorrectArchives);
+        } else {
+            // each shard is an independent workbook, so they can be written at the same time
+            logger.info(sortedFiles.length + " files do not fit in a single Excel sheet, the report is split in " + shards.size() + " files");
+            List<File> shardFiles = new ArrayList<>();
+            // counted once per shard, for the shard itself and for the summary
+            List<Map<String, Integer>> shardCounts = new ArrayList<>();
+            List<Future<?>> futures = new ArrayList<>();
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(Global.NB_THREADS, shards.size()));
+            try {
+                for(int i = 0; i < shards.size(); i++) {
+                    int[] shard = shards.get(i);
+                    File shardFile = getShardFile(excelFile, i + 1);
+                    Map<String, Integer> counts = getCountPerStatus(shard);
+                    shardFiles.add(shardFile);
+                    shardCounts.add(counts);
+                    futures.add(executor.submit(() -> {
+                        writeReport(shardFile, shard, counts, missingOrIncorrectArchives);
+                        return null;
+                    }));
+                }
+                for(Future<?> future : futures) future.get();
+            } catch (ExecutionException ee) {
+                throw ee.getCause();
+            } finally {
+                executor.shutdownNow();
+            }
+            writeSummary(excelFile, shards, shardFiles, shardCounts);
+        }
+    }
 
+    /**
+     * Splits the sorted list of files so that each part fits in an Excel sheet, keeping the files of a raw data together when possible
+     */
+    private List<int[]> getShards(int[] sortedFiles) {
+        int maxRows = Math.min(Global.MAX_ROWS_PER_REPORT, MAX_ROWS_PER_SHEET);
+        List<int[]> shards = new ArrayList<>();
+        int shardStart = 0;
+        int i = 0;
+        while(i < sortedFiles.length) {
+            // find the files of the current raw data
+            String rawFileName = results.getRawFileName(sortedFiles[i]);
+            int j = i + 1;
+            while(j < sortedFiles.length && results.getRawFileName(sortedFiles[j]).equals(rawFileName)) j++;
+            if(i > shardStart && j - shardStart > maxRows) {
+                shards.add(Arrays.copyOfRange(sortedFiles, shardStart, i));
+                shardStart = i;
+            }
+            // a raw data with too many files for a single sheet has to be split
+            while(j - shardStart > maxRows) {
+                shards.add(Arrays.copyOfRange(sortedFiles, shardStart, shardStart + maxRows));
+                shardStart += maxRows;
+            }
+            i = j;
+        }
+        if(shardStart < sortedFiles.length || shards.isEmpty()) shards.add(Arrays.copyOfRange(sortedFiles, shardStart, sortedFiles.length));
+        return shards;
+    }
+
+    private File getShardFile(File excelFile, int shardNumber) {
+        String name = excelFile.getName().replaceAll("\\.xlsx$", "");
+        return new File(excelFile.getParentFile(), name + "-part" + shardNumber + ".xlsx");
+    }
+
+    private HashMap<String, Integer> getCountPerStatus(int[] files) {
+        HashMap<String, Integer> counts = new HashMap<>();
+        Arrays.stream(files).mapToObj(results::getRawData).distinct().forEach(item -> counts.merge(item.getStatus(), 1, Integer::sum));
+        return counts;
+    }
+
+    private void writeEnvironment(Report report, Map<String, Integer> counts) {
         // Describe the environment first
-        addRow(sheet, rowNum++, new String[] { "Software", Global.getAppTitle() });
-        Row row1 = sheet.createRow(rowNum++);
-        addCell(row1, 0, "Report date", defaultStyle);
-        addCell(row1, 1, new Date(), defaultDateStyle);
-        addRow(sheet, rowNum++, new String[] { "Host name", host });
-        addRow(sheet, rowNum++, new String[] { "User name", Global.getUsername() });
-        addRow(sheet, rowNum++, new String[] { "Archive directory", Global.RAW_DATA_ARCHIVES.getAbsolutePath() });
-        addRow(sheet, rowNum++, new String[] { "RAW data directory", Global.RAW_DATA_DIRECTORY.getAbsolutePath() });
+        report.addRow(new String[] { "Software", Global.getAppTitle() });
+        Row row1 = report.createRow();
+        report.addCell(row1, 0, "Report date", report.defaultStyle);
+        report.addCell(row1, 1, new Date(), report.defaultDateStyle);
+        report.addRow(new String[] { "Host name", Global.getHostname() });
+        report.addRow(new String[] { "User name", Global.getUsername() });
+        report.addRow(new String[] { "Archive directory", Global.RAW_DATA_ARCHIVES.getAbsolutePath() });
+        report.addRow(new String[] { "RAW data directory", Global.RAW_DATA_DIRECTORY.getAbsolutePath() });
         if(Global.IS_FOLDER_LIKE) {
-            addRow(sheet, rowNum++, new String[]{"RAW data type", "Directory"});
-            addRow(sheet, rowNum++, new String[]{"RAW data directory template", String.join(", ", Global.FOLDER_LIKE_RAW_DATA_TEMPLATE)});
+            report.addRow(new String[]{"RAW data type", "Directory"});
+            report.addRow(new String[]{"RAW data directory template", String.join(", ", Global.FOLDER_LIKE_RAW_DATA_TEMPLATE)});
         } else {
-            addRow(sheet, rowNum++, new String[]{"RAW data type", "File"});
-            addRow(sheet, rowNum++, new String[]{"RAW data file template", String.join(", ", Global.FILE_LIKE_RAW_DATA_TEMPLATE)});
+            report.addRow(new String[]{"RAW data type", "File"});
+            report.addRow(new String[]{"RAW data file template", String.join(", ", Global.FILE_LIKE_RAW_DATA_TEMPLATE)});
         }
-        int rowForFullyArchived = rowNum;
-        addRow(sheet, rowNum++, new String[] { "Raw data fully archived" });
-        addRow(sheet, rowNum++, new String[] { "Raw data of partially archived" });
-        addRow(sheet, rowNum++, new String[] { "Raw data not archived" });
+        if(!parser.isComplete()) report.addRow(new String[] { "Scan status", "Incomplete, the scan has been cancelled" });
+        // rows can not be edited once written, so the summary of how many raw data is fully/partially/not archived is written now
+        report.addRow(new String[] { "Raw data fully archived", ""+counts.getOrDefault(Status.FULLY_ARCHIVED.toString(), 0) });
+        report.addRow(new String[] { "Raw data of partially archived", ""+counts.getOrDefault(Status.PARTIALLY_ARCHIVED.toString(), 0) });
+        report.addRow(new String[] { "Raw data not archived", ""+counts.getOrDefault(Status.NOT_ARCHIVED.toString(), 0) });
+        if(isChecksumVerified) report.addRow(new String[] { "Raw data with corrupted archives", ""+counts.getOrDefault(Status.CORRUPTED.toString(), 0) });
         // add an empty line
-        addRow(sheet, rowNum++, new String[] {});
+        report.addRow(new String[] {});
+    }
+
+    private void writeReport(File excelFile, int[] files, Map<String, Integer> counts, Map<String, Integer> missingOrIncorrectArchives) throws IOException {
+        Report report = new Report();
+        writeEnvironment(report, counts);
         // write the headers
-        int headerLine = rowNum;
-        String[] headers = new String[] { "Raw file name", "Local file path", "Local file size", "Local file size (bytes)",
-                "Local file creation date", "Local file last modification date", "Archived file path", "Archived file size (bytes)",
-                "Archived file creation date", "Size match", "Raw file is completely archived", "Raw file status" };
-        addRow(sheet, rowNum++, headers, headerStyle);
-
-        // count the number of files per folder-like raw data, so we can tell the status of a raw data
-        HashMap<String, Integer> nbFilesPerRawFolder = new HashMap<>();
-        // prepare a hashmap to store how many files per raw data are missing or with a wrong size (only useful when folder-like)
-        HashMap<String, Integer> missingOrIncorrectArchives = new HashMap<>();
+        int headerLine = report.rowNum;
+        report.addRow(HEADERS, report.headerStyle);
+        // the checksum column is only added when the content has been verified
+        if(isChecksumVerified) report.addCell(report.sheet.getRow(headerLine), HEADERS.length, CHECKSUM_HEADER, report.headerStyle);
+        String lastColumn = isChecksumVerified ? "M" : "L";
 
         // write the data content
         String lastRawFileName = "";
-        int nbRawFilesWritten = 0;
-        for(File file : data.keySet().stream().sorted().collect(Collectors.toList())) {
-            Row row = sheet.createRow(rowNum++);
+        for(int file : files) {
+            if(Thread.currentThread().isInterrupted()) {
+                report.discard();
+                throw new CancellationException("Export has been cancelled");
+            }
+            Row row = report.createRow();
             int col = 0;
-            String currentRawFileName = Global.getRawFileName(file);
-            if(!missingOrIncorrectArchives.containsKey(currentRawFileName)) missingOrIncorrectArchives.put(currentRawFileName, 0);
-            nbFilesPerRawFolder.put(currentRawFileName, nbFilesPerRawFolder.containsKey(currentRawFileName) ? nbFilesPerRawFolder.get(currentRawFileName) + 1 : 1);
-            CellStyle style = (Global.IS_FOLDER_LIKE && !currentRawFileName.equals(lastRawFileName) ? topStyle : defaultStyle);
-            CellStyle dateStyle = (Global.IS_FOLDER_LIKE && !currentRawFileName.equals(lastRawFileName) ? topDateStyle : defaultDateStyle);
-            addCell(row, col++, currentRawFileName, style); // A
-            addCell(row, col++, file.getAbsolutePath(), style); // B
-            addCell(row, col++, Global.formatSize(file.length()), style); // C
-            addCell(row, col++, file.length(), style); // D
-            addCell(row, col++, Global.getCreationTimeAsDate(file), dateStyle); // E
-            addCell(row, col++, new Date(file.lastModified()), dateStyle); // F
-            File archive = data.get(file);
-            if(archive != null) {
-                addCell(row, col++, archive.getAbsolutePath(), style); // G
-                addCell(row, col++, archive.length(), style); // H
-                addCell(row, col++, Global.getCreationTimeAsDate(archive), dateStyle); // I
-                if(file.length() == archive.length()) {
-                    addCell(row, col, "TRUE", style); //J (using text to avoid a large number of formulas)
-                } else {
-                    missingOrIncorrectArchives.replace(currentRawFileName, missingOrIncorrectArchives.get(currentRawFileName) + 1);
-                    addCell(row, col, "FALSE", style); //J
-                }
+            String currentRawFileName = results.getRawFileName(file);
+            CellStyle style = (Global.IS_FOLDER_LIKE && !currentRawFileName.equals(lastRawFileName) ? report.topStyle : report.defaultStyle);
+            CellStyle dateStyle = (Global.IS_FOLDER_LIKE && !currentRawFileName.equals(lastRawFileName) ? report.topDateStyle : report.defaultDateStyle);
+            report.addCell(row, col++, currentRawFileName, style); // A
+            // the columns are read directly, no File is created for each row
+            long size = results.getSize(file);
+            report.addCell(row, col++, results.getPath(file), style); // B
+            report.addCell(row, col++, Global.formatSize(size), style); // C
+            report.addCell(row, col++, size, style); // D
+            report.addCell(row, col++, new Date(results.getCreationTime(file)), dateStyle); // E
+            report.addCell(row, col++, new Date(results.getLastModifiedTime(file)), dateStyle); // F
+            if(results.hasArchive(file)) {
+                long archiveSize = results.getArchiveSize(file);
+                report.addCell(row, col++, results.getArchivePath(file), style); // G
+                report.addCell(row, col++, archiveSize, style); // H
+                report.addCell(row, col++, new Date(results.getArchiveCreationTime(file)), dateStyle); // I
+                report.addCell(row, col++, size == archiveSize ? "TRUE" : "FALSE", style); //J (using text to avoid a large number of formulas)
             } else {
-                addCell(row, col++, "", style); //G
-                addCell(row, col++, "", style); //H
-                addCell(row, col++, "", style); //I
-                addCell(row, col, "FALSE", style); //J
-                missingOrIncorrectArchives.replace(currentRawFileName, missingOrIncorrectArchives.get(currentRawFileName) + 1);
+                report.addCell(row, col++, "", style); //G
+                report.addCell(row, col++, "", style); //H
+                report.addCell(row, col++, "", style); //I
+                report.addCell(row, col++, "FALSE", style); //J
+            }
+            report.addCell(row, col++, (missingOrIncorrectArchives.get(currentRawFileName) == 0 ? "TRUE" : "FALSE"), style); //K
+            report.addCell(row, col++, results.getRawData(file).getStatus(), style); //L
+            if(isChecksumVerified) {
+                Boolean checksumMatch = results.getChecksumMatch(file);
+                report.addCell(row, col, checksumMatch == null ? "" : checksumMatch ? "TRUE" : "FALSE", style); //M (empty if the size was already wrong)
             }
-            // add a formula to check that both sizes are equal
-//                addFormula(row, col++, "AND(NOT(ISBLANK(H"+rowNum+")),D"+rowNum+"=H"+rowNum+")", style); // J
-            // add a formula to check that all files in a raw file have the same size: NB.SI(A:A;A9)=NB.SI.ENS(A:A;A9;J:J;VRAI)
-//                addFormula(row, col, "COUNTIF(A:A,A"+rowNum+")=COUNTIFS(A:A,A"+rowNum+",J:J,TRUE)", style); // K
-            if(!currentRawFileName.equals(lastRawFileName)) nbRawFilesWritten += 1;
-            lastRawFileName = currentRawFileName;
-//            if(rowNum % 100 == 0) logger.info(rowNum + " lines written...");
-            if(nbRawFilesWritten % 100 == 0) logger.info(nbRawFilesWritten + " raw data exported...");
-        }
-
-        // second loop to fill column K without using a formula
-        rowNum = headerLine + 1;
-        lastRawFileName = "";
-        logger.info("Add final formulas");
-        for(File file : data.keySet().stream().sorted().collect(Collectors.toList())) {
-            Row row = sheet.getRow(rowNum++);
-            String currentRawFileName = Global.getRawFileName(file);
-            CellStyle style = (Global.IS_FOLDER_LIKE && !currentRawFileName.equals(lastRawFileName) ? topStyle : defaultStyle);
-            addCell(row, 10, (missingOrIncorrectArchives.get(currentRawFileName) == 0 ? "TRUE" : "FALSE"), style); //K
             lastRawFileName = currentRawFileName;
+            nbFilesWritten.increment();
+        }
+        int rowNum = report.rowNum;
+        Sheet sheet = report.sheet;
 
-            String status = rawData.get(currentRawFileName).getStatus();
-            addCell(row, 11, status, style); //L
-        }
-
-        // final loop to display the summary of how many raw data is fully/partially/not archived
-        addCell(sheet.getRow(rowForFullyArchived), 1, ""+countPerStatus.getOrDefault(Status.FULLY_ARCHIVED.toString(), 0), defaultStyle);
-        addCell(sheet.getRow(rowForFullyArchived + 1), 1, ""+countPerStatus.getOrDefault(Status.PARTIALLY_ARCHIVED.toString(), 0), defaultStyle);
-        addCell(sheet.getRow(rowForFullyArchived + 2), 1, ""+countPerStatus.getOrDefault(Status.NOT_ARCHIVED.toString(), 0), defaultStyle);
-
-        // add autofilters
-        sheet.setAutoFilter(CellRangeAddress.valueOf("A"+(headerLine+1)+":L"+(rowNum-1)));
-        // resize all columns to fit the content size
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
-        }
-
-        // add a conditional formatting for the last columns
-        SheetConditionalFormatting sheetCF = sheet.getSheetConditionalFormatting();
-        ConditionalFormattingRule ruleFalse = getRule(sheetCF, "FALSE", IndexedColors.RED.getIndex());
-        ConditionalFormattingRule[] cfRules = { ruleFalse };
-        CellRangeAddress[] regions = { CellRangeAddress.valueOf("J"+(headerLine+2)+":K"+(rowNum)) };
-        sheetCF.addConditionalFormatting(regions, cfRules);
-        // Status column
-        sheetCF = sheet.getSheetConditionalFormatting();
-        ConditionalFormattingRule ruleFull = getRule(sheetCF, Status.FULLY_ARCHIVED.toString(), IndexedColors.GREEN.getIndex());
-        ConditionalFormattingRule rulePart = getRule(sheetCF, Status.PARTIALLY_ARCHIVED.toString(), IndexedColors.LIGHT_ORANGE.getIndex());
-        ConditionalFormattingRule ruleNot = getRule(sheetCF, Status.NOT_ARCHIVED.toString(), IndexedColors.RED.getIndex());
-        ConditionalFormattingRule[] cfRules2 = { ruleFull, rulePart, ruleNot };
-        CellRangeAddress[] regions2 = { CellRangeAddress.valueOf("L"+(headerLine+2)+":L"+(rowNum)) };
-        sheetCF.addConditionalFormatting(regions2, cfRules2);
-
-        // write the output to a file
-//        File excelFile = new File(global.REPORTS_DIRECTORY, "RawFinder-"+host+"-"+time+".xlsx");
-        FileOutputStream fileOut = new FileOutputStream(excelFile);
-        workbook.write(fileOut);
-        workbook.close();
-        fileOut.close();
+        // filters and formats need at least one row (a cancelled scan may not have found anything)
+        if(files.length > 0) {
+            // add autofilters
+            sheet.setAutoFilter(CellRangeAddress.valueOf("A"+(headerLine+1)+":"+lastColumn+(rowNum-1)));
 
+            // add a conditional formatting for the last columns
+            SheetConditionalFormatting sheetCF = sheet.getSheetConditionalFormatting();
+            ConditionalFormattingRule ruleFalse = getRule(sheetCF, "FALSE", IndexedColors.RED.getIndex());
+            ConditionalFormattingRule[] cfRules = { ruleFalse };
+            CellRangeAddress[] regions = { CellRangeAddress.valueOf("J"+(headerLine+2)+":K"+(rowNum)) };
+            if(isChecksumVerified) regions = new CellRangeAddress[] { regions[0], CellRangeAddress.valueOf("M"+(headerLine+2)+":M"+(rowNum)) };
+            sheetCF.addConditionalFormatting(regions, cfRules);
+            // Status column
+            sheetCF = sheet.getSheetConditionalFormatting();
+            ConditionalFormattingRule ruleFull = getRule(sheetCF, Status.FULLY_ARCHIVED.toString(), IndexedColors.GREEN.getIndex());
+            ConditionalFormattingRule rulePart = getRule(sheetCF, Status.PARTIALLY_ARCHIVED.toString(), IndexedColors.LIGHT_ORANGE.getIndex());
+            ConditionalFormattingRule ruleNot = getRule(sheetCF, Status.NOT_ARCHIVED.toString(), IndexedColors.RED.getIndex());
+            ConditionalFormattingRule[] cfRules2 = { ruleFull, rulePart, ruleNot };
+            CellRangeAddress[] regions2 = { CellRangeAddress.valueOf("L"+(headerLine+2)+":L"+(rowNum)) };
+            sheetCF.addConditionalFormatting(regions2, cfRules2);
+            // a conditional formatting is limited to 3 rules
+            if(isChecksumVerified) {
+                ConditionalFormattingRule ruleCorrupted = getRule(sheetCF, Status.CORRUPTED.toString(), IndexedColors.DARK_RED.getIndex());
+                sheetCF.addConditionalFormatting(regions2, ruleCorrupted);
+            }
+        }
+
+        report.save(excelFile, isChecksumVerified ? HEADERS.length + 1 : HEADERS.length);
+        logger.info("Excel file "+excelFile.getName()+" has been correctly written");
+    }
+
+    /**
+     * Writes the main report file when the files have been split in several reports, with a link to each of them
+     */
+    private void writeSummary(File excelFile, List<int[]> shards, List<File> shardFiles, List<Map<String, Integer>> shardCounts) throws IOException {
+        Report report = new Report();
+        writeEnvironment(report, countPerStatus);
+        int headerLine = report.rowNum;
+        report.addRow(SUMMARY_HEADERS, report.headerStyle);
+        if(isChecksumVerified) report.addCell(report.sheet.getRow(headerLine), SUMMARY_HEADERS.length, CORRUPTED_SUMMARY_HEADER, report.headerStyle);
+        CellStyle linkStyle = report.workbook.createCellStyle();
+        Font linkFont = report.workbook.createFont();
+        linkFont.setUnderline(Font.U_SINGLE);
+        linkFont.setColor(IndexedColors.BLUE.getIndex());
+        linkStyle.setFont(linkFont);
+        for(int i = 0; i < shards.size(); i++) {
+            int[] shard = shards.get(i);
+            Map<String, Integer> counts = shardCounts.get(i);
+            Row row = report.createRow();
+            Cell cell = report.addCell(row, 0, shardFiles.get(i).getName(), linkStyle);
+            Hyperlink link = report.workbook.getCreationHelper().createHyperlink(HyperlinkType.FILE);
+            link.setAddress(shardFiles.get(i).getName());
+            cell.setHyperlink(link);
+            report.addCell(row, 1, results.getRawFileName(shard[0]), report.defaultStyle);
+            report.addCell(row, 2, results.getRawFileName(shard[shard.length - 1]), report.defaultStyle);
+            report.addCell(row, 3, (long) shard.length, report.defaultStyle);
+            report.addCell(row, 4, (long) counts.getOrDefault(Status.FULLY_ARCHIVED.toString(), 0), report.defaultStyle);
+            report.addCell(row, 5, (long) counts.getOrDefault(Status.PARTIALLY_ARCHIVED.toString(), 0), report.defaultStyle);
+            report.addCell(row, 6, (long) counts.getOrDefault(Status.NOT_ARCHIVED.toString(), 0), report.defaultStyle);
+            if(isChecksumVerified) report.addCell(row, 7, (long) counts.getOrDefault(Status.CORRUPTED.toString(), 0), report.defaultStyle);
+        }
+        report.save(excelFile, isChecksumVerified ? SUMMARY_HEADERS.length + 1 : SUMMARY_HEADERS.length);
         logger.info("Excel file "+excelFile.getName()+" has been correctly written");
     }
 
@@ -210,29 +313,106 @@ public class Export {
         return rule;
     }
 
-    private void addCell(Row row, int column, String value, CellStyle style) {
-        Cell cell = row.createCell(column);
-        cell.setCellValue(value);
-        if(style != null) cell.setCellStyle(style);
-    }
-    private void addCell(Row row, int column, Long value, CellStyle style) {
-        Cell cell = row.createCell(column);
-        cell.setCellValue(value);
-        if(style != null) cell.setCellStyle(style);
-    }
-    private void addCell(Row row, int column, Date value, CellStyle style) {
-        Cell cell = row.createCell(column);
-        cell.setCellValue(value);
-        if(style != null) cell.setCellStyle(style);
-    }
+    /**
+     * A workbook being written, with its styles and the width of the longest content of each column
+     */
+    private static class Report {
+        final SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW_SIZE);
+        final Sheet sheet;
+        final CellStyle headerStyle;
+        final CellStyle topStyle;
+        final CellStyle topDateStyle;
+        final CellStyle defaultDateStyle;
+        final CellStyle defaultStyle;
+        // dates are displayed with the format "dd mmmm yyyy hh:mm:ss", it is only used to compute the column widths
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMMM yyyy HH:mm:ss");
+        private final int[] columnWidths = new int[HEADERS.length + 1];
+        int rowNum = 0;
 
-    private void addRow(Sheet sheet, int rowNumber, String[] items) {
-        addRow(sheet, rowNumber, items, null);
-    }
-    private void addRow(Sheet sheet, int rowNumber, String[] items, CellStyle style) {
-        Row row = sheet.createRow(rowNumber);
-        for(int i = 0; i < items.length; i++) {
-            addCell(row, i, items[i], style);
+        Report() {
+            CreationHelper createHelper = workbook.getCreationHelper();
+            sheet = workbook.createSheet(Global.getHostname()+" "+Global.simpleFormatDate(new Date().getTime()));
+
+            // prepare styles
+            headerStyle = workbook.createCellStyle();
+            headerStyle.setBorderTop(BorderStyle.MEDIUM);
+            headerStyle.setTopBorderColor(IndexedColors.BLACK.getIndex());
+            headerStyle.setBorderBottom(BorderStyle.MEDIUM);
+            headerStyle.setBottomBorderColor(IndexedColors.BLACK.getIndex());
+            headerStyle.setBorderLeft(BorderStyle.MEDIUM);
+            headerStyle.setLeftBorderColor(IndexedColors.BLACK.getIndex());
+            headerStyle.setBorderRight(BorderStyle.MEDIUM);
+            headerStyle.setRightBorderColor(IndexedColors.BLACK.getIndex());
+            Font font = workbook.createFont();
+            font.setBold(true);
+            headerStyle.setFont(font);
+            topStyle = workbook.createCellStyle();
+            topStyle.setBorderTop(BorderStyle.MEDIUM);
+            topStyle.setTopBorderColor(IndexedColors.BLACK.getIndex());
+            topDateStyle = workbook.createCellStyle();
+            topDateStyle.cloneStyleFrom(topStyle);
+            topDateStyle.setDataFormat(createHelper.createDataFormat().getFormat("dd mmmm yyyy hh:mm:ss"));
+            defaultDateStyle = workbook.createCellStyle();
+            defaultDateStyle.setDataFormat(createHelper.createDataFormat().getFormat("dd mmmm yyyy hh:mm:ss"));
+            defaultStyle = workbook.createCellStyle();
+        }
+
+        Row createRow() {
+            return sheet.createRow(rowNum++);
+        }
+
+        void save(File excelFile, int nbColumns) throws IOException {
+            // resize all columns to fit the longest content (autoSizeColumn would need all the rows in memory)
+            for (int i = 0; i < nbColumns; i++) {
+                sheet.setColumnWidth(i, Math.min(255, columnWidths[i] + 2) * 256);
+            }
+            // write the output to a file
+            try (FileOutputStream fileOut = new FileOutputStream(excelFile)) {
+                workbook.write(fileOut);
+            } finally {
+                // remove the temporary files used to flush the rows, even if the report could not be written
+                discard();
+            }
+        }
+
+        // remove the temporary files without writing anything
+        void discard() throws IOException {
+            workbook.dispose();
+            workbook.close();
+        }
+
+        private void updateColumnWidth(int column, String value) {
+            if(column < columnWidths.length && value.length() > columnWidths[column]) columnWidths[column] = value.length();
+        }
+
+        Cell addCell(Row row, int column, String value, CellStyle style) {
+            updateColumnWidth(column, value);
+            Cell cell = row.createCell(column);
+            cell.setCellValue(value);
+            if(style != null) cell.setCellStyle(style);
+            return cell;
+        }
+        void addCell(Row row, int column, Long value, CellStyle style) {
+            updateColumnWidth(column, value.toString());
+            Cell cell = row.createCell(column);
+            cell.setCellValue(value);
+            if(style != null) cell.setCellStyle(style);
+        }
+        void addCell(Row row, int column, Date value, CellStyle style) {
+            updateColumnWidth(column, dateFormat.format(value));
+            Cell cell = row.createCell(column);
+            cell.setCellValue(value);
+            if(style != null) cell.setCellStyle(style);
+        }
+
+        void addRow(String[] items) {
+            addRow(items, null);
+        }
+        void addRow(String[] items, CellStyle style) {
+            Row row = createRow();
+            for(int i = 0; i < items.length; i++) {
+                addCell(row, i, items[i], style);
+            }
         }
     }
 }
@@ -0,0 +1,52 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.util.Date;
+import java.util.Locale;
+
+public enum ExportFormat {
+    XLSX ("xlsx", "Excel"),
+    CSV ("csv", "CSV"),
+    JSONL ("jsonl", "JSON Lines"),
+    BINARY ("rfb", "RawFinder binary");
+    private final String extension;
+    private final String description;
+    ExportFormat(String _extension, String _description) {
+        extension = _extension;
+        description = _description;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+    public String getDescription() {
+        return description;
+    }
+
+    public String getDefaultFileName() {
+        String host = Global.getHostname();
+        String time = Global.simpleFormatDate(new Date().getTime());
+        return "RawFinder-"+host+"-"+time+"."+extension;
+    }
+
+    /**
+     * @return the format matching the name or the extension given, or null if there is none
+     */
+    public static ExportFormat fromName(String name) {
+        for(ExportFormat format : values()) {
+            if(format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) return format;
+        }
+        return null;
+    }
+
+    /**
+     * @return the format matching the extension of the file, Excel by default
+     */
+    public static ExportFormat fromFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for(ExportFormat format : values()) {
+            if(name.endsWith("." + format.extension)) return format;
+        }
+        return XLSX;
+    }
+}
@@ -3,8 +3,9 @@ package fr.lsmbo.rawfinder;
 import javafx.concurrent.Task;
 
 import java.io.File;
+import java.util.concurrent.CancellationException;
 
-public class ExportThread extends Task<Export> {
+public class ExportThread extends Task<File> {
 
     private DataParser parser;
     private File outputFile;
@@ -14,13 +15,28 @@ public class ExportThread extends Task<Export> {
         outputFile = _outputFile;
     }
 
-    public Export call() throws Exception {
-        Export export = new Export(parser);
+    public File call() throws Exception {
+        // the format is given by the extension of the output file
+        ExportFormat format = ExportFormat.fromFile(outputFile);
         try {
-            export.start(outputFile);
+            if(format == ExportFormat.XLSX) {
+                Export export = new Export(parser);
+                export.setProgressListener((progress, message) -> {
+                    updateProgress(progress, 1);
+                    updateMessage(message);
+                });
+                export.start(outputFile);
+            } else {
+                try (StreamingExport export = new StreamingExport(format, outputFile)) {
+                    export.write(parser);
+                }
+            }
+        } catch (CancellationException ce) {
+            // the task is already marked as cancelled
+            return null;
         } catch (Throwable t) {
             throw  new Exception(t);
         }
-        return export;
+        return outputFile;
     }
 }
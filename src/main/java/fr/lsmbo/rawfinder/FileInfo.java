@@ -0,0 +1,77 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+
+/**
+ * Immutable snapshot of the attributes of a file, read once during the scan and reused afterwards
+ * (raw data aggregation, archive search and export) instead of asking the file system again.
+ */
+public final class FileInfo {
+
+    private final File file;
+    private final boolean isDirectory;
+    private final long size;
+    private final long creationTime;
+    private final long lastModifiedTime;
+
+    public FileInfo(File _file, boolean _isDirectory, long _size, long _creationTime, long _lastModifiedTime) {
+        file = _file;
+        isDirectory = _isDirectory;
+        size = _size;
+        creationTime = _creationTime;
+        lastModifiedTime = _lastModifiedTime;
+    }
+
+    public static FileInfo of(Path path, BasicFileAttributes attributes) {
+        return new FileInfo(path.toFile(), attributes.isDirectory(), attributes.size(), attributes.creationTime().toMillis(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * Reads all the attributes of a file in a single call
+     * @return the attributes, or null if the file does not exist
+     */
+    public static FileInfo read(File file) throws IOException {
+        try {
+            Path path = file.toPath();
+            return of(path, Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (NoSuchFileException | InvalidPathException e) {
+            // a path that can not be represented on this file system can not exist either
+            return null;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+    public String getName() {
+        return file.getName();
+    }
+    public boolean isDirectory() {
+        return isDirectory;
+    }
+    public boolean isFile() {
+        return !isDirectory;
+    }
+    public long getSize() {
+        return size;
+    }
+    public long getCreationTime() {
+        return creationTime;
+    }
+    public Date getCreationDate() {
+        return new Date(creationTime);
+    }
+    public long getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+    public Date getLastModifiedDate() {
+        return new Date(lastModifiedTime);
+    }
+}
@@ -6,10 +6,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.file.Path;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.attribute.DosFileAttributes;
-import java.nio.file.attribute.FileTime;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -33,8 +31,30 @@ public class Global {
     public static Boolean IS_FOLDER_LIKE;
     public static List<String> FOLDER_LIKE_RAW_DATA_TEMPLATE;
     public static List<String> FILE_LIKE_RAW_DATA_TEMPLATE;
+    private static TemplateMatcher folderLikeMatcher;
+    private static TemplateMatcher fileLikeMatcher;
+    private static ExclusionMatcher exclusionMatcher;
+    public static Integer NB_THREADS;
+    public static Integer ARCHIVE_CACHE_SIZE;
+    public static Boolean USE_ARCHIVE_INDEX;
+    public static Boolean INCREMENTAL_SCAN;
+    public static Integer MAX_ROWS_PER_REPORT;
+    public static Boolean VERIFY_CHECKSUMS;
+    public static Integer NB_VERIFY_THREADS;
+    public static Integer NB_PROBE_THREADS;
+    public static Integer PIPELINE_QUEUE_SIZE;
+    public static Boolean USE_NATIVE_LISTING;
+    public static List<String> EXCLUDED_DIRECTORIES;
+    public static Integer MAX_DEPTH;
+    public static String DATE_WINDOW_TYPE;
+    public static String DATE_WINDOW_START;
+    public static String DATE_WINDOW_END;
 
     public final static String[] MONTH_NAMES = {"janvier", "février", "mars", "avril", "mai", "juin", "juillet", "août", "septembre", "octobre", "novembre", "décembre"};
+    public final static String ARCHIVE_INDEX_FILE_NAME = "RawFinder-archive.idx";
+    public final static String SCAN_SNAPSHOT_FILE_NAME = "RawFinder-snapshot.json.gz";
+    public final static String CHECKSUM_STORE_FILE_NAME = "RawFinder-checksums.log";
+    public final static String SCAN_TOTALS_FILE_NAME = "RawFinder-totals.json";
     private final static String[] units = new String[] { "octets", "ko", "Mo", "Go", "To" };
 
     public static void initialize() throws Throwable {
@@ -55,6 +75,37 @@ public class Global {
         IS_FOLDER_LIKE = settings.getFolderLike();
         FOLDER_LIKE_RAW_DATA_TEMPLATE = Arrays.stream(settings.getFolderLikeRawDataTemplate().split(" ")).collect(Collectors.toList());
         FILE_LIKE_RAW_DATA_TEMPLATE = Arrays.stream(settings.getFileLikeRawDataTemplate().split(" ")).collect(Collectors.toList());
+        // use one thread per processor if the number of threads is not set
+        NB_THREADS = settings.getNbThreads() == null || settings.getNbThreads() < 1 ? Runtime.getRuntime().availableProcessors() : settings.getNbThreads();
+        // maximum number of archive directories kept in memory
+        ARCHIVE_CACHE_SIZE = settings.getArchiveCacheSize() == null || settings.getArchiveCacheSize() < 1 ? 10000 : settings.getArchiveCacheSize();
+        USE_ARCHIVE_INDEX = settings.getUseArchiveIndex() != null && settings.getUseArchiveIndex();
+        INCREMENTAL_SCAN = settings.getIncrementalScan() != null && settings.getIncrementalScan();
+        // larger reports are split in several Excel files
+        MAX_ROWS_PER_REPORT = settings.getMaxRowsPerReport() == null || settings.getMaxRowsPerReport() < 1 ? 1000000 : settings.getMaxRowsPerReport();
+        // content verification reads every archived file, the number of concurrent reads depends on the storage
+        VERIFY_CHECKSUMS = settings.getVerifyChecksums() != null && settings.getVerifyChecksums();
+        NB_VERIFY_THREADS = settings.getNbVerifyThreads() == null || settings.getNbVerifyThreads() < 1 ? 4 : settings.getNbVerifyThreads();
+        // searching the archives is mostly waiting for the archive share, it has its own threads
+        NB_PROBE_THREADS = settings.getNbProbeThreads() == null || settings.getNbProbeThreads() < 1 ? NB_THREADS : settings.getNbProbeThreads();
+        // maximum number of files waiting between two steps of the scan
+        PIPELINE_QUEUE_SIZE = settings.getPipelineQueueSize() == null || settings.getPipelineQueueSize() < 1 ? 10000 : settings.getPipelineQueueSize();
+        // list the directories with the native calls of the system when they are available
+        USE_NATIVE_LISTING = settings.getUseNativeListing() != null && settings.getUseNativeListing();
+        // directories that never contain raw data are not listed at all
+        EXCLUDED_DIRECTORIES = settings.getExcludedDirectories() == null ? new ArrayList<>() : settings.getExcludedDirectories();
+        // number of directory levels read below the data directory, raw data directories are always read entirely (0 for no limit)
+        MAX_DEPTH = settings.getMaxDepth() == null || settings.getMaxDepth() < 0 ? 0 : settings.getMaxDepth();
+        // only search the raw files created (or modified) between two days, the whole data directory is searched if the type is empty
+        DATE_WINDOW_TYPE = settings.getDateWindowType() == null ? "" : settings.getDateWindowType();
+        DATE_WINDOW_START = settings.getDateWindowStart() == null ? "" : settings.getDateWindowStart();
+        DATE_WINDOW_END = settings.getDateWindowEnd() == null ? "" : settings.getDateWindowEnd();
+        try {
+            DateWindow.parse(DATE_WINDOW_TYPE, DATE_WINDOW_START, DATE_WINDOW_END);
+        } catch (IllegalArgumentException iae) {
+            logger.warn("Date window is not valid, the whole data directory will be searched", iae);
+            DATE_WINDOW_TYPE = "";
+        }
 
         // make sure the mandatory directories are available (if not, maybe the settings file is not encoded in UTF8 ?)
         if(RAW_DATA_DIRECTORY == null) logger.warn("Data directory is not available");
@@ -72,6 +123,21 @@ public class Global {
     public static void updateSettingsFile() throws Throwable {
         // gather settings
         Settings settings = new Settings(RAW_DATA_DIRECTORY, RAW_DATA_ARCHIVES, IS_FOLDER_LIKE, FOLDER_LIKE_RAW_DATA_TEMPLATE, FILE_LIKE_RAW_DATA_TEMPLATE, REPORTS_DIRECTORY);
+        settings.setNbThreads(NB_THREADS);
+        settings.setArchiveCacheSize(ARCHIVE_CACHE_SIZE);
+        settings.setUseArchiveIndex(USE_ARCHIVE_INDEX);
+        settings.setIncrementalScan(INCREMENTAL_SCAN);
+        settings.setMaxRowsPerReport(MAX_ROWS_PER_REPORT);
+        settings.setVerifyChecksums(VERIFY_CHECKSUMS);
+        settings.setNbVerifyThreads(NB_VERIFY_THREADS);
+        settings.setNbProbeThreads(NB_PROBE_THREADS);
+        settings.setPipelineQueueSize(PIPELINE_QUEUE_SIZE);
+        settings.setUseNativeListing(USE_NATIVE_LISTING);
+        settings.setExcludedDirectories(EXCLUDED_DIRECTORIES);
+        settings.setMaxDepth(MAX_DEPTH);
+        settings.setDateWindowType(DATE_WINDOW_TYPE);
+        settings.setDateWindowStart(DATE_WINDOW_START);
+        settings.setDateWindowEnd(DATE_WINDOW_END);
 //        settings.setDefaultReportDirectory(REPORTS_DIRECTORY.getAbsolutePath());
         // save as JSON to the settings file
         String filePath = getSettingsFile().getFile();
@@ -86,11 +152,36 @@ public class Global {
         return (Global.RAW_DATA_DIRECTORY != null && Global.RAW_DATA_DIRECTORY.exists() && Global.RAW_DATA_ARCHIVES != null && Global.RAW_DATA_ARCHIVES.exists());
     }
 
-    private static Boolean matchesAny(String name, List<String> list) {
-        for(String item : list) {
-            if(name.matches(item)) return true;
+    // the templates are compiled again only when they have been replaced (ie. from the settings window)
+    private static TemplateMatcher getFolderLikeMatcher() {
+        TemplateMatcher matcher = folderLikeMatcher;
+        if(matcher == null || matcher.getTemplates() != FOLDER_LIKE_RAW_DATA_TEMPLATE) {
+            matcher = new TemplateMatcher(FOLDER_LIKE_RAW_DATA_TEMPLATE);
+            folderLikeMatcher = matcher;
         }
-        return false;
+        return matcher;
+    }
+
+    private static TemplateMatcher getFileLikeMatcher() {
+        TemplateMatcher matcher = fileLikeMatcher;
+        if(matcher == null || matcher.getTemplates() != FILE_LIKE_RAW_DATA_TEMPLATE) {
+            matcher = new TemplateMatcher(FILE_LIKE_RAW_DATA_TEMPLATE);
+            fileLikeMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    /**
+     * @param relativePath path of a directory within the scanned directory
+     * @return true if the directory matches one of the exclusion patterns
+     */
+    public static boolean isExcluded(Path relativePath) {
+        ExclusionMatcher matcher = exclusionMatcher;
+        if(matcher == null || matcher.getPatterns() != EXCLUDED_DIRECTORIES) {
+            matcher = new ExclusionMatcher(EXCLUDED_DIRECTORIES);
+            exclusionMatcher = matcher;
+        }
+        return !matcher.isEmpty() && matcher.matches(relativePath);
     }
 
     private static Boolean endsWithAny(String name, List<String> list) {
@@ -106,24 +197,41 @@ public class Global {
     }
 
     public static String getRawParentName(File file) {
-        while(file != null && !matchesAny(file.getName(), FOLDER_LIKE_RAW_DATA_TEMPLATE)) {
+        TemplateMatcher matcher = getFolderLikeMatcher();
+        while(file != null && !matcher.matches(file.getName())) {
             file = file.getParentFile();
         }
-        return (file != null && matchesAny(file.getName(), FOLDER_LIKE_RAW_DATA_TEMPLATE) ? file.getName() : "");
+        return (file != null ? file.getName() : "");
+    }
+
+    /**
+     * Same as getRawFileName, when the name of the raw data directory containing the file is already known
+     * @param rawParentName name of the closest raw data directory containing the file, empty if there is none
+     */
+    public static String getRawFileName(File file, String rawParentName) {
+        if(IS_FOLDER_LIKE) return getRawParentName(file.getName(), rawParentName);
+        else return file.getName();
+    }
+
+    /**
+     * Same as getRawParentName, without walking up the ancestors: the item itself if it is a raw data directory,
+     * otherwise the raw data directory containing it
+     */
+    public static String getRawParentName(String name, String rawParentName) {
+        return getFolderLikeMatcher().matches(name) ? name : rawParentName;
     }
 
-    public static Boolean IsRawData(File file) {
+    public static Boolean IsRawData(FileInfo file, String rawParentName) {
         if(IS_FOLDER_LIKE) {
             if(file.isDirectory()) {
-                return matchesAny(file.getName(), FOLDER_LIKE_RAW_DATA_TEMPLATE);
-            } else if(file.isFile()) {
+                return getFolderLikeMatcher().matches(file.getName());
+            } else {
                 // avoid obvious Windows Explorer files
                 if(file.getName().equals("desktop.ini")) return false;
                 // conditions: file name has to match the expected extension, and one parent must match the folder template
-                return !getRawParentName(file).equals(""); // allows all files within a raw data directory
+                return !getRawParentName(file.getName(), rawParentName).equals(""); // allows all files within a raw data directory
             }
-        } else return file.isFile() && matchesAny(file.getName(), FILE_LIKE_RAW_DATA_TEMPLATE);
-        return false;
+        } else return file.isFile() && getFileLikeMatcher().matches(file.getName());
     }
 
     public static String formatSize(Long _size) {
@@ -155,24 +263,6 @@ public class Global {
         return appName + " " + appVersion + " (" + appDate + ")";
     }
 
-    public static Date getCreationTimeAsDate(File file) {
-        FileTime time = getCreationTime(file);
-        if(time != null) return new Date(time.toMillis());
-        return null;
-    }
-
-    public static FileTime getCreationTime(File file) {
-        try {
-            if(file != null && file.exists()) {
-                DosFileAttributes attributes = Files.readAttributes(file.toPath(), DosFileAttributes.class);
-                return attributes.creationTime();
-            }
-        } catch (IOException ioe) {
-            logger.warn("File " + file.getAbsolutePath() + ": creation date could not be read, can't retrieve archived version", ioe);
-        } catch (Throwable ignored) {}
-        return null;
-    }
-
     public static String getLicence() {
         return 	"Copyright 2021 CNRS\n" +
                 "Authors: Alexandre BUREL\n" +
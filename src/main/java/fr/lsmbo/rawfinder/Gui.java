@@ -3,6 +3,7 @@ package fr.lsmbo.rawfinder;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -27,8 +28,14 @@ public class Gui {
 
     protected static final Logger logger = LoggerFactory.getLogger(Gui.class);
     protected static Stage dialogStage;
+    private static final String ALL_STATUSES = "All statuses";
     private DataParser parser = null;
+    private DataParserThread scanThread = null;
+    private ExportThread exportThread = null;
     private final ObservableList<RawData> data = FXCollections.observableArrayList();
+    // only set once the scan is over, the table then shows a filtered and sorted view of it
+    private RawDataIndex index = null;
+    private boolean isUpdatingView = false;
     private final Alert exitPopup = new Alert(Alert.AlertType.CONFIRMATION);
     private final ButtonType btnYes = new ButtonType("Yes", ButtonBar.ButtonData.YES);
     private final ButtonType btnNo = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
@@ -56,7 +63,17 @@ public class Gui {
     @FXML
     Button btnQuit;
     @FXML
+    TextField txtSearch;
+    @FXML
+    CheckBox chkPrefix;
+    @FXML
+    ChoiceBox<String> cbStatus;
+    @FXML
+    Label lblCount;
+    @FXML
     ProgressIndicator progressIndicator;
+    @FXML
+    Label lblProgress;
 
     public void setDialogStage(Stage primaryStage) {
         dialogStage = primaryStage;
@@ -97,6 +114,7 @@ public class Gui {
                     if (item.equals(Status.FULLY_ARCHIVED.toString())) color = "limegreen";
                     else if (item.equals(Status.PARTIALLY_ARCHIVED.toString())) color = "orange";
                     else if (item.equals(Status.NOT_ARCHIVED.toString())) color = "tomato";
+                    else if (item.equals(Status.CORRUPTED.toString())) color = "orchid";
                     setText(item);
                 } else {
                     setText("");
@@ -105,6 +123,19 @@ public class Gui {
             }
         });
 
+        // filters and sorting are done with the index of the results, instead of sorting the whole list of the table
+        cbStatus.getItems().add(ALL_STATUSES);
+        for(Status status : Status.values()) cbStatus.getItems().add(status.toString());
+        cbStatus.setValue(ALL_STATUSES);
+        cbStatus.valueProperty().addListener((observable, oldValue, newValue) -> updateView());
+        txtSearch.textProperty().addListener((observable, oldValue, newValue) -> updateView());
+        chkPrefix.selectedProperty().addListener((observable, oldValue, newValue) -> updateView());
+        table.setSortPolicy(t -> {
+            if(index == null) return TableView.DEFAULT_SORT_POLICY.call(t);
+            updateView();
+            return true;
+        });
+
         // Confirmation before exit
         exitPopup.setTitle("Quit application");
         exitPopup.setHeaderText("Do you want to quit this application ?");
@@ -146,23 +177,40 @@ public class Gui {
         if(!Global.areSettingsValid()) {
             showAlertDialog(Alert.AlertType.ERROR, "Data parsing error", "Settings seems to be incomplete");
         } else {
+            index = null;
             data.clear();
+            lblCount.setText("");
 //            parser = new DataParser(Global.RAW_DATA_DIRECTORY);
             try {
                 toggleButtons();
                 final DataParserThread thread = new DataParserThread();
                 thread.setParentDirectory(Global.RAW_DATA_DIRECTORY);
+                scanThread = thread;
+                bindProgress(thread);
+                // the results are displayed while the scan runs, by batches to keep the window responsive
+                final BatchedListUpdater<RawData> updater = new BatchedListUpdater<>(data, table::refresh);
+                thread.setRawDataListener(updater::add);
                 thread.setOnSucceeded(event -> {
+                    scanThread = null;
+                    updater.close();
                     parser = thread.getValue();
-                    parser.getAsRawData().keySet().forEach(key -> data.add(parser.getAsRawData().get(key)));
+                    // a single change event, with the raw data that were not displayed yet and their final content
+                    index = thread.getIndex();
+                    updateView();
                     toggleButtons();
+                    // a cancelled scan still shows what has been found so far
+                    if(!parser.isComplete()) showAlertDialog(Alert.AlertType.INFORMATION, null, "Data parsing cancelled, the results are incomplete");
                 });
                 thread.setOnFailed(event -> {
+                    scanThread = null;
+                    updater.close();
                     showAlertDialog(Alert.AlertType.ERROR, "Data parsing error", event.getSource().getMessage());
                     logger.error(event.getSource().getMessage(), event.getSource());
                     toggleButtons();
                 });
                 thread.setOnCancelled(event -> {
+                    scanThread = null;
+                    updater.close();
                     showAlertDialog(Alert.AlertType.INFORMATION, null, "Data parsing cancelled");
                     toggleButtons();
                 });
@@ -174,16 +222,60 @@ public class Gui {
         }
     }
 
+    /**
+     * Fills the table with the rows of the index matching the filters, in the order of the sorted column
+     */
+    private void updateView() {
+        if(index == null || isUpdatingView) return;
+        isUpdatingView = true;
+        try {
+            Status status = null;
+            for(Status value : Status.values()) {
+                if(value.toString().equals(cbStatus.getValue())) status = value;
+            }
+            RawDataIndex.Column column = null;
+            boolean isAscending = true;
+            if(!table.getSortOrder().isEmpty()) {
+                TableColumn<RawData, ?> sortColumn = table.getSortOrder().get(0);
+                if(sortColumn == tcName) column = RawDataIndex.Column.NAME;
+                else if(sortColumn == tcSize) column = RawDataIndex.Column.SIZE;
+                else if(sortColumn == tcDate) column = RawDataIndex.Column.DATE;
+                else if(sortColumn == tcStatus) column = RawDataIndex.Column.STATUS;
+                isAscending = sortColumn.getSortType() == TableColumn.SortType.ASCENDING;
+            }
+            data.setAll(index.select(status, txtSearch.getText(), chkPrefix.isSelected(), column, isAscending));
+            lblCount.setText(String.format("%,d / %,d raw data", data.size(), index.size()));
+        } finally {
+            isUpdatingView = false;
+        }
+    }
+
+    /**
+     * Shows the progress and the message published by the task while it runs
+     */
+    private void bindProgress(Task<?> task) {
+        progressIndicator.progressProperty().bind(task.progressProperty());
+        lblProgress.textProperty().bind(task.messageProperty());
+    }
+
     private void toggleButtons() {
         boolean isRunning = !progressIndicator.isVisible();
+        if(!isRunning) {
+            // the last message stays visible
+            progressIndicator.progressProperty().unbind();
+            progressIndicator.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+            lblProgress.textProperty().unbind();
+        }
         btnStart.setDisable(isRunning);
         btnClear.setDisable(isRunning || data.size() == 0);
         btnSettings.setDisable(isRunning);
         btnExport.setDisable(isRunning || data.size() == 0);
-//        btnCancel.setDisable(!isRunning);
-        btnCancel.setDisable(true);
+        btnCancel.setDisable(!isRunning);
         btnQuit.setDisable(isRunning);
         table.setDisable(isRunning);
+        txtSearch.setDisable(isRunning);
+        chkPrefix.setDisable(isRunning);
+        cbStatus.setDisable(isRunning);
         progressIndicator.setVisible(isRunning);
     }
 
@@ -212,7 +304,9 @@ public class Gui {
             FileChooser fc = new FileChooser();
             fc.setTitle("Save as...");
             fc.setInitialDirectory(Global.REPORTS_DIRECTORY);
-            fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Excel", "*.xlsx"));
+            for(ExportFormat format : ExportFormat.values()) {
+                fc.getExtensionFilters().add(new FileChooser.ExtensionFilter(format.getDescription(), "*." + format.getExtension()));
+            }
             fc.setInitialFileName(Export.getDefaultFileName());
 
             File outputFile = fc.showSaveDialog(dialogStage);
@@ -220,14 +314,24 @@ public class Gui {
                 toggleButtons();
                 final ExportThread thread = new ExportThread();
                 thread.initialize(parser, outputFile);
+                exportThread = thread;
+                bindProgress(thread);
                 thread.setOnSucceeded(event -> {
+                    exportThread = null;
                     thread.getValue();
                     showAlertDialog(Alert.AlertType.INFORMATION, null, "Export is finished");
                     toggleButtons();
                 });
                 thread.setOnFailed(event -> {
+                    exportThread = null;
                     showAlertDialog(Alert.AlertType.ERROR, "Export error", event.getSource().getMessage());
                     logger.error(event.getSource().getMessage(), event.getSource());
+                    toggleButtons();
+                });
+                thread.setOnCancelled(event -> {
+                    exportThread = null;
+                    showAlertDialog(Alert.AlertType.INFORMATION, null, "Export cancelled");
+                    toggleButtons();
                 });
                 new Thread(thread).start();
             }
@@ -269,9 +373,19 @@ public class Gui {
         }
     }
 
+    @FXML
+    private void cancelListener() {
+        // the scan stops and returns what has been found so far, the export is interrupted
+        if(scanThread != null) scanThread.cancelScan();
+        if(exportThread != null) exportThread.cancel(true);
+        btnCancel.setDisable(true);
+    }
+
     @FXML
     private void clearListener() {
+        index = null;
         data.clear();
+        lblCount.setText("");
         btnClear.setDisable(true);
         btnExport.setDisable(true);
     }
@@ -0,0 +1,47 @@
+package fr.lsmbo.rawfinder;
+
+import java.util.Arrays;
+
+/**
+ * Sorts arrays of row numbers with a comparator on the row numbers, so the values compared can stay in primitive arrays
+ */
+class IndexSort {
+
+    interface IndexComparator {
+        int compare(int index1, int index2);
+    }
+
+    /**
+     * Stable merge sort of the first n row numbers of the array, without boxing them
+     * @return a sorted copy
+     */
+    static int[] sort(int[] indexes, int n, IndexComparator comparator) {
+        int[] order = Arrays.copyOf(indexes, n);
+        int[] buffer = new int[n];
+        for(int width = 1; width < n; width *= 2) {
+            for(int low = 0; low < n - width; low += 2 * width) {
+                int middle = low + width;
+                int high = Math.min(low + 2 * width, n);
+                // both halves are already in order
+                if(comparator.compare(order[middle - 1], order[middle]) <= 0) continue;
+                System.arraycopy(order, low, buffer, low, high - low);
+                int i = low;
+                int j = middle;
+                for(int k = low; k < high; k++) {
+                    if(j >= high || (i < middle && comparator.compare(buffer[i], buffer[j]) <= 0)) order[k] = buffer[i++];
+                    else order[k] = buffer[j++];
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @return the row numbers from 0 to n - 1
+     */
+    static int[] identity(int n) {
+        int[] indexes = new int[n];
+        for(int i = 0; i < n; i++) indexes[i] = i;
+        return indexes;
+    }
+}
@@ -0,0 +1,71 @@
+package fr.lsmbo.rawfinder;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Writes one JSON object per line, with a "type" field telling whether the line describes a raw file ("file")
+ * or a raw data ("rawdata"). Dates are written in ISO-8601 format (UTC) and sizes in bytes.
+ */
+public class JsonLinesReportWriter implements ReportWriter {
+
+    private final Gson gson = new Gson();
+    private final Writer writer;
+
+    public JsonLinesReportWriter(File outputFile) throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public void writeFile(FileInfo file, FileInfo archive, String rawFileName, Boolean checksumMatch) throws IOException {
+        JsonObject line = new JsonObject();
+        line.addProperty("type", "file");
+        line.addProperty("rawData", rawFileName);
+        line.addProperty("path", file.getFile().getAbsolutePath());
+        line.addProperty("size", file.getSize());
+        line.addProperty("creationDate", formatDate(file.getCreationTime()));
+        line.addProperty("lastModificationDate", formatDate(file.getLastModifiedTime()));
+        if(archive != null) {
+            JsonObject archiveLine = new JsonObject();
+            archiveLine.addProperty("path", archive.getFile().getAbsolutePath());
+            archiveLine.addProperty("size", archive.getSize());
+            archiveLine.addProperty("creationDate", formatDate(archive.getCreationTime()));
+            line.add("archive", archiveLine);
+        }
+        line.addProperty("sizeMatch", archive != null && archive.getSize() == file.getSize());
+        if(checksumMatch != null) line.addProperty("checksumMatch", checksumMatch);
+        writeLine(line);
+    }
+
+    @Override
+    public void writeRawData(RawData item) throws IOException {
+        JsonObject line = new JsonObject();
+        line.addProperty("type", "rawdata");
+        line.addProperty("name", item.getName());
+        line.addProperty("size", item.getSize().longValue());
+        if(item.getDate() != null) line.addProperty("creationDate", formatDate(item.getDate().getTime()));
+        line.addProperty("nbFiles", item.getNbFilesTotal());
+        line.addProperty("nbFilesArchived", item.getNbFilesArchived());
+        line.addProperty("nbFilesCorrupted", item.getNbFilesCorrupted());
+        line.addProperty("status", item.getStatus());
+        writeLine(line);
+    }
+
+    private static String formatDate(long time) {
+        return Instant.ofEpochMilli(time).toString();
+    }
+
+    private void writeLine(JsonObject line) throws IOException {
+        gson.toJson(line, writer);
+        writer.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,170 @@
+package fr.lsmbo.rawfinder;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Local file system listed with readdir (which reads the directory entries by blocks with getdents64) and statx,
+ * which returns the size, the dates and the creation date of an item in a single call.
+ * As the local storage, symbolic links are followed.
+ */
+class LinuxStorage implements Storage {
+
+    // direct mapping, much faster than a library interface for a few calls per item
+    private static class LibC {
+        static {
+            Native.register("c");
+        }
+        static native Pointer opendir(String name);
+        static native Pointer readdir(Pointer dir);
+        static native int closedir(Pointer dir);
+        static native int dirfd(Pointer dir);
+        static native int statx(int dirfd, Pointer path, int flags, int mask, Pointer statxbuf);
+        static native int statx(int dirfd, String path, int flags, int mask, Pointer statxbuf);
+    }
+
+    // errno values
+    private static final int ENOENT = 2;
+    private static final int EACCES = 13;
+    private static final int ENOTDIR = 20;
+    private static final int AT_FDCWD = -100;
+    private static final int STATX_TYPE = 0x1;
+    private static final int STATX_MTIME = 0x40;
+    private static final int STATX_SIZE = 0x200;
+    private static final int STATX_BTIME = 0x800;
+    private static final int S_IFMT = 0170000;
+    private static final int S_IFDIR = 0040000;
+    // layout of struct dirent64 and struct statx, the same on all 64 bits architectures
+    private static final int DIRENT_NAME_OFFSET = 19;
+    private static final int STATX_LENGTH = 256;
+    private static final int STATX_MASK_OFFSET = 0;
+    private static final int STATX_MODE_OFFSET = 28;
+    private static final int STATX_SIZE_OFFSET = 40;
+    private static final int STATX_BTIME_OFFSET = 80;
+    private static final int STATX_MTIME_OFFSET = 112;
+
+    @Override
+    public DirectoryStream<FileInfo> list(File directory) throws IOException {
+        Pointer dir = LibC.opendir(directory.getPath());
+        if(dir == null) throw getException(directory, Native.getLastError());
+        int fd = LibC.dirfd(dir);
+        Memory buffer = new Memory(STATX_LENGTH);
+        return new DirectoryStream<FileInfo>() {
+            private boolean isClosed = false;
+
+            @Override
+            public Iterator<FileInfo> iterator() {
+                return new Iterator<FileInfo>() {
+                    private FileInfo next = null;
+                    // the attributes of the next item could not be read
+                    private IOException error = null;
+
+                    @Override
+                    public boolean hasNext() {
+                        while(next == null && error == null && !isClosed) {
+                            // the end of the directory is only told apart from an error by errno
+                            Native.setLastError(0);
+                            Pointer entry = LibC.readdir(dir);
+                            if(entry == null) {
+                                int error = Native.getLastError();
+                                if(error != 0) throw new DirectoryIteratorException(getException(directory, error));
+                                return false;
+                            }
+                            Pointer name = entry.share(DIRENT_NAME_OFFSET);
+                            if(isDotOrDotDot(name)) continue;
+                            try {
+                                next = read(fd, directory, name, buffer);
+                            } catch (IOException ioe) {
+                                error = ioe;
+                            }
+                        }
+                        return next != null || error != null;
+                    }
+
+                    @Override
+                    public FileInfo next() {
+                        if(!hasNext()) throw new NoSuchElementException();
+                        if(error != null) {
+                            IOException itemError = error;
+                            error = null;
+                            throw new DirectoryIteratorException(itemError);
+                        }
+                        FileInfo item = next;
+                        next = null;
+                        return item;
+                    }
+                };
+            }
+
+            @Override
+            public synchronized void close() {
+                if(isClosed) return;
+                isClosed = true;
+                LibC.closedir(dir);
+            }
+        };
+    }
+
+    /**
+     * @return the attributes of an item of the directory, or null if it has been removed since the directory has been read
+     * (or if it is a link to nothing)
+     */
+    private FileInfo read(int fd, File directory, Pointer name, Memory buffer) throws IOException {
+        // the name is given as read in the directory entry, it is only decoded once
+        int result = LibC.statx(fd, name, 0, STATX_TYPE | STATX_SIZE | STATX_MTIME | STATX_BTIME, buffer);
+        File file = new File(directory, name.getString(0));
+        if(result != 0) {
+            int error = Native.getLastError();
+            if(error == ENOENT) return null;
+            throw getException(file, error);
+        }
+        return toFileInfo(file, buffer);
+    }
+
+    private static boolean isDotOrDotDot(Pointer name) {
+        if(name.getByte(0) != '.') return false;
+        byte second = name.getByte(1);
+        return second == 0 || (second == '.' && name.getByte(2) == 0);
+    }
+
+    @Override
+    public FileInfo read(File file) throws IOException {
+        Memory buffer = new Memory(STATX_LENGTH);
+        if(LibC.statx(AT_FDCWD, file.getPath(), 0, STATX_TYPE | STATX_SIZE | STATX_MTIME | STATX_BTIME, buffer) != 0) {
+            int error = Native.getLastError();
+            if(error == ENOENT) return null;
+            throw getException(file, error);
+        }
+        return toFileInfo(file, buffer);
+    }
+
+    private static FileInfo toFileInfo(File file, Memory buffer) {
+        boolean isDirectory = (buffer.getShort(STATX_MODE_OFFSET) & S_IFMT) == S_IFDIR;
+        long lastModifiedTime = getTime(buffer, STATX_MTIME_OFFSET);
+        // without a creation date (unknown to the file system, or zero) the modification date is used, as the local storage does
+        long creationTime = (buffer.getInt(STATX_MASK_OFFSET) & STATX_BTIME) != 0 ? getTime(buffer, STATX_BTIME_OFFSET) : 0;
+        if(creationTime == 0) creationTime = lastModifiedTime;
+        return new FileInfo(file, isDirectory, buffer.getLong(STATX_SIZE_OFFSET), creationTime, lastModifiedTime);
+    }
+
+    private static long getTime(Memory buffer, int offset) {
+        // struct statx_timestamp: seconds, then nanoseconds
+        return buffer.getLong(offset) * 1000 + buffer.getInt(offset + 8) / 1000000;
+    }
+
+    private static IOException getException(File file, int error) {
+        switch (error) {
+            case ENOENT: return new NoSuchFileException(file.getPath());
+            case ENOTDIR: return new NotDirectoryException(file.getPath());
+            case EACCES: return new AccessDeniedException(file.getPath());
+            default: return new FileSystemException(file.getPath(), null, "errno " + error);
+        }
+    }
+}
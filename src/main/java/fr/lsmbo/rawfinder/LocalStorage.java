@@ -0,0 +1,74 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The local file system, including the mounted shares
+ */
+public class LocalStorage implements Storage {
+
+    public static final LocalStorage INSTANCE = new LocalStorage();
+
+    @Override
+    public DirectoryStream<FileInfo> list(File directory) throws IOException {
+        DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath());
+        return new DirectoryStream<FileInfo>() {
+            @Override
+            public Iterator<FileInfo> iterator() {
+                Iterator<Path> paths = stream.iterator();
+                return new Iterator<FileInfo>() {
+                    private FileInfo next = null;
+                    // the attributes of the next item could not be read
+                    private IOException error = null;
+
+                    @Override
+                    public boolean hasNext() {
+                        while(next == null && error == null && paths.hasNext()) {
+                            Path path = paths.next();
+                            try {
+                                next = FileInfo.of(path, Files.readAttributes(path, BasicFileAttributes.class));
+                            } catch (NoSuchFileException nsfe) {
+                                // removed since the directory has been read, or a link to nothing
+                            } catch (IOException ioe) {
+                                error = ioe;
+                            }
+                        }
+                        return next != null || error != null;
+                    }
+
+                    @Override
+                    public FileInfo next() {
+                        if(!hasNext()) throw new NoSuchElementException();
+                        if(error != null) {
+                            IOException itemError = error;
+                            error = null;
+                            throw new DirectoryIteratorException(itemError);
+                        }
+                        FileInfo item = next;
+                        next = null;
+                        return item;
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+            }
+        };
+    }
+
+    @Override
+    public FileInfo read(File file) throws IOException {
+        return FileInfo.read(file);
+    }
+}
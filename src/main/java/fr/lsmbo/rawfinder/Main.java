@@ -3,6 +3,7 @@ package fr.lsmbo.rawfinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.Locale;
 
 public class Main {
@@ -17,16 +18,28 @@ public class Main {
             // Start GUI if requested
             if(args.length > 0 && args[0].toLowerCase(Locale.ROOT).equals("gui")) {
                 GuiLauncher.run();
+            } else if(getOption(args, "--convert=") != null) {
+                // convert a binary report written by a previous run, without scanning anything
+                convert(new File(getOption(args, "--convert=")), getFormat(args, ExportFormat.CSV));
             } else {
                 // Or run automatically in CLI
-                if(Global.areSettingsValid()) throw new Exception("Settings seem to be incomplete");
+                if(!Global.areSettingsValid()) throw new Exception("Settings seem to be incomplete");
+                ExportFormat format = getFormat(args, ExportFormat.XLSX);
                 // read local directories and fill data
                 DataParser parser = new DataParser(Global.RAW_DATA_DIRECTORY);
-                parser.start();
-
-                // generate excel output
-                Export export = new Export(parser);
-                export.start();
+                if(format == ExportFormat.XLSX) {
+                    parser.start();
+                    // generate excel output
+                    Export export = new Export(parser);
+                    export.start();
+                } else {
+                    // other formats are written while the directories are read
+                    try (StreamingExport export = new StreamingExport(format, new File(Global.REPORTS_DIRECTORY, format.getDefaultFileName()))) {
+                        parser.setScanListener(export);
+                        parser.start();
+                        export.finish(parser);
+                    }
+                }
             }
 
         } catch (Throwable t) {
@@ -36,4 +49,37 @@ public class Main {
         logger.info("End of RawFinder");
     }
 
+    /**
+     * @return the value of the option given as "--name=value", or null if it is not given
+     */
+    private static String getOption(String[] args, String prefix) {
+        for(String arg : args) {
+            if(arg.toLowerCase(Locale.ROOT).startsWith(prefix)) return arg.substring(prefix.length());
+        }
+        return null;
+    }
+
+    /**
+     * @return the format given with "--format=xlsx|csv|jsonl|rfb", or the default format
+     */
+    private static ExportFormat getFormat(String[] args, ExportFormat defaultFormat) throws Exception {
+        String name = getOption(args, "--format=");
+        if(name == null) return defaultFormat;
+        ExportFormat format = ExportFormat.fromName(name);
+        if(format == null) throw new Exception("Unknown output format in '--format=" + name + "'");
+        return format;
+    }
+
+    /**
+     * Writes the content of a binary report in a CSV or JSON Lines report next to it
+     */
+    private static void convert(File inputFile, ExportFormat format) throws Exception {
+        if(format != ExportFormat.CSV && format != ExportFormat.JSONL) throw new Exception("A binary report can only be converted to CSV or JSON Lines");
+        File outputFile = new File(inputFile.getAbsoluteFile().getParentFile(), inputFile.getName().replaceAll("\\." + ExportFormat.BINARY.getExtension() + "$", "") + "." + format.getExtension());
+        try (ReportWriter writer = ReportWriter.create(format, outputFile)) {
+            BinaryReportReader.read(inputFile, writer);
+        }
+        logger.info("Binary report " + inputFile.getName() + " has been converted to " + outputFile.getName());
+    }
+
 }
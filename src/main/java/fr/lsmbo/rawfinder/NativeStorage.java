@@ -0,0 +1,50 @@
+package fr.lsmbo.rawfinder;
+
+import com.sun.jna.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.file.DirectoryStream;
+
+/**
+ * Local file system listed with the native calls of the operating system, which return the attributes of all the items
+ * of a directory with their names, instead of one call per item (FindFirstFileEx on Windows, readdir and statx on Linux).
+ * The local storage is used instead when no native backend is available.
+ */
+public final class NativeStorage {
+
+    protected static final Logger logger = LoggerFactory.getLogger(NativeStorage.class);
+
+    private static Storage instance = null;
+
+    private NativeStorage() {}
+
+    /**
+     * @return the native storage of this operating system, or the local storage if it is not available
+     */
+    public static synchronized Storage getInstance() {
+        if(instance == null) {
+            instance = LocalStorage.INSTANCE;
+            try {
+                Storage storage = null;
+                if(Platform.isWindows()) storage = new WindowsStorage();
+                else if(Platform.isLinux() && Platform.is64Bit()) storage = new LinuxStorage();
+                if(storage != null) {
+                    // make sure the native calls work before using them for the scan
+                    try (DirectoryStream<FileInfo> stream = storage.list(new File(System.getProperty("java.io.tmpdir")))) {
+                        stream.forEach(item -> {});
+                    }
+                    instance = storage;
+                    logger.info("Directories are listed with the native calls of " + System.getProperty("os.name"));
+                } else {
+                    logger.warn("Native directory listing is not available on " + System.getProperty("os.name") + ", the local storage is used instead");
+                }
+            } catch (Throwable t) {
+                // the library may be missing, or too old (statx requires glibc 2.28)
+                logger.warn("Native directory listing is not available, the local storage is used instead", t);
+            }
+        }
+        return instance;
+    }
+}
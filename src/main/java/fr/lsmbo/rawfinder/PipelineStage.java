@@ -0,0 +1,78 @@
+package fr.lsmbo.rawfinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * A step of the scan: a fixed number of workers taking items from a bounded queue.
+ * A full queue blocks the previous step, so the number of items waiting between two steps is limited
+ * and a slow step (ie. reading the archive share) slows down the steps feeding it instead of filling the memory.
+ */
+public class PipelineStage<T> {
+
+    protected static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+    // sent once per worker when no more items will come
+    private static final Object END = new Object();
+
+    private final String name;
+    private final BlockingQueue<Object> queue;
+    private final Consumer<T> handler;
+    private final Thread[] workers;
+    private volatile RuntimeException error = null;
+
+    public PipelineStage(String _name, int nbWorkers, int capacity, Consumer<T> _handler) {
+        name = _name;
+        queue = new ArrayBlockingQueue<>(capacity);
+        handler = _handler;
+        workers = new Thread[nbWorkers];
+        for(int i = 0; i < nbWorkers; i++) {
+            workers[i] = new Thread(this::run, "RawFinder-" + name + "-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run() {
+        try {
+            Object item;
+            while((item = queue.take()) != END) {
+                try {
+                    handler.accept((T) item);
+                } catch (RuntimeException e) {
+                    // keep consuming, otherwise the previous steps would be blocked forever
+                    logger.error("Error in step " + name, e);
+                    if(error == null) error = e;
+                }
+            }
+        } catch (InterruptedException ie) {
+            // the scan is stopped
+        }
+    }
+
+    /**
+     * Queues an item, waiting for some room if the queue is full
+     */
+    public void put(T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Step " + name + " has been interrupted");
+        }
+    }
+
+    /**
+     * Waits for the queued items to be processed, once the previous steps have finished
+     */
+    public void finish() throws InterruptedException {
+        for(int i = 0; i < workers.length; i++) queue.put(END);
+        for(Thread worker : workers) worker.join();
+        if(error != null) throw error;
+    }
+}
@@ -0,0 +1,82 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Which archive policy has found the archived files of each subtree of the data directory (an instrument directory,
+ * usually), so the most likely policy can be tried first for the next files of the same subtree.
+ */
+class PolicyStatistics {
+
+    private static final DataParser.Policy[] POLICIES = DataParser.Policy.values();
+    // matches per policy in each subtree, updated by the probe workers
+    private final Map<String, LongAdder[]> matchesPerSubtree = new ConcurrentHashMap<>();
+    private final LongAdder[] nbProbes = newCounters(POLICIES.length);
+    private final LongAdder[] nbMatches = newCounters(POLICIES.length);
+    // number of files found at the first probe, at the second one, etc. and the last one for the files without any match
+    private final LongAdder[] nbFilesPerProbeCount = newCounters(POLICIES.length + 1);
+
+    private static LongAdder[] newCounters(int size) {
+        LongAdder[] counters = new LongAdder[size];
+        for(int i = 0; i < size; i++) counters[i] = new LongAdder();
+        return counters;
+    }
+
+    /**
+     * @param relativePath path of a file within the data directory
+     * @return the subtree the file belongs to, its first directory
+     */
+    static String getSubtree(String relativePath) {
+        int separator = relativePath.indexOf(File.separatorChar);
+        return separator < 0 ? "" : relativePath.substring(0, separator);
+    }
+
+    /**
+     * @return the policies sorted by number of matches in the subtree, in the default order when there is no match yet
+     */
+    DataParser.Policy[] getOrder(String subtree) {
+        LongAdder[] matches = matchesPerSubtree.get(subtree);
+        if(matches == null) return POLICIES;
+        long[] counts = new long[POLICIES.length];
+        for(int i = 0; i < counts.length; i++) counts[i] = matches[i].sum();
+        // stable sort, the default order is kept between policies with the same number of matches
+        DataParser.Policy[] order = POLICIES.clone();
+        Arrays.sort(order, (policy1, policy2) -> Long.compare(counts[policy2.ordinal()], counts[policy1.ordinal()]));
+        return order;
+    }
+
+    void addProbe(DataParser.Policy policy) {
+        nbProbes[policy.ordinal()].increment();
+    }
+
+    /**
+     * @param policy the policy that has found the archive with the correct size, null if there is none
+     * @param probeCount the number of policies tried for this file
+     */
+    void addResult(String subtree, DataParser.Policy policy, int probeCount) {
+        if(policy == null) {
+            nbFilesPerProbeCount[POLICIES.length].increment();
+            return;
+        }
+        nbMatches[policy.ordinal()].increment();
+        nbFilesPerProbeCount[probeCount - 1].increment();
+        matchesPerSubtree.computeIfAbsent(subtree, key -> newCounters(POLICIES.length))[policy.ordinal()].increment();
+    }
+
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder("- Archive probes:");
+        for(DataParser.Policy policy : POLICIES) {
+            summary.append(policy.ordinal() == 0 ? " " : ", ").append(policy).append(" ").append(nbProbes[policy.ordinal()].sum())
+                    .append(" (").append(nbMatches[policy.ordinal()].sum()).append(" matches)");
+        }
+        summary.append("; files matched at probe");
+        for(int i = 0; i < POLICIES.length; i++) summary.append(i == 0 ? " " : ", ").append(i + 1).append(": ").append(nbFilesPerProbeCount[i].sum());
+        summary.append(", not matched: ").append(nbFilesPerProbeCount[POLICIES.length].sum());
+        summary.append(" (").append(matchesPerSubtree.size()).append(" subtrees)\n");
+        return summary.toString();
+    }
+}
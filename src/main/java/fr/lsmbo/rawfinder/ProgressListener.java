@@ -0,0 +1,13 @@
+package fr.lsmbo.rawfinder;
+
+/**
+ * Receives the progress of a scan or an export, a few times per second at most.
+ */
+public interface ProgressListener {
+
+    /**
+     * @param progress between 0 and 1, or -1 if it can not be estimated
+     * @param message a description of what has been done so far
+     */
+    void progressChanged(double progress, String message);
+}
@@ -0,0 +1,66 @@
+package fr.lsmbo.rawfinder;
+
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the progress of a long task from its own thread at a fixed rate, so the workers only have to update
+ * their counters. The listener (ie. the JavaFX task) is notified twice per second, the log every 10 seconds.
+ */
+public class ProgressReporter implements Closeable {
+
+    private static final long PERIOD = 500;
+    private static final int LOG_PERIODS = 20;
+
+    private final Logger logger;
+    private final DoubleSupplier progress;
+    private final Supplier<String> message;
+    private final ProgressListener listener;
+    private final ScheduledExecutorService executor;
+    private int nbPeriods = 0;
+
+    public ProgressReporter(Logger _logger, DoubleSupplier _progress, Supplier<String> _message, ProgressListener _listener) {
+        logger = _logger;
+        progress = _progress;
+        message = _message;
+        listener = _listener;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RawFinder-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::report, PERIOD, PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    private void report() {
+        try {
+            String currentMessage = message.get();
+            if(listener != null) listener.progressChanged(progress.getAsDouble(), currentMessage);
+            if(++nbPeriods % LOG_PERIODS == 0) logger.info(currentMessage);
+        } catch (RuntimeException e) {
+            // an exception would stop the next reports
+            logger.warn("Progress could not be reported", e);
+        }
+    }
+
+    /**
+     * Stops reporting, after a last report to the listener
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            // a report may be running
+            executor.awaitTermination(PERIOD, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if(listener != null) listener.progressChanged(progress.getAsDouble(), message.get());
+    }
+}
@@ -1,53 +1,112 @@
 package fr.lsmbo.rawfinder;
 
-import java.io.File;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
+/**
+ * A raw data and the files it is made of. Files are added by the scan threads without any lock,
+ * the values can be read at any time and the status is always computed from the current counters.
+ */
 public class RawData {
 
-    private File file;
-    private String name;
-    private Double size;
-    private Date date;
-    private Integer nbFilesArchived;
-    private Integer nbFilesTotal;
-    private Status status;
-
-    public RawData(File _file) {
-        file = _file;
-        name = file.getName();
-        size = 0d;
-        date = Global.getCreationTimeAsDate(file);
-        nbFilesArchived = 0;
-        nbFilesTotal = 0;
-        status = null;
-    }
-
-    public void addFile(File _file, Boolean isArchived) {
-        size += _file.length();
-        if(isArchived) nbFilesArchived += 1;
-        nbFilesTotal += 1;
-        if(date == null || Global.getCreationTimeAsDate(_file).before(date)) {
-            date = Global.getCreationTimeAsDate(_file);
-        }
+    // primitive fields updated atomically, there may be one raw data per scanned file
+    private static final long NO_DATE = Long.MAX_VALUE;
+    private static final AtomicLongFieldUpdater<RawData> SIZE = AtomicLongFieldUpdater.newUpdater(RawData.class, "size");
+    private static final AtomicLongFieldUpdater<RawData> DATE = AtomicLongFieldUpdater.newUpdater(RawData.class, "date");
+    private static final AtomicLongFieldUpdater<RawData> COUNTERS = AtomicLongFieldUpdater.newUpdater(RawData.class, "counters");
+    // the three counters share a single long so they always change together, with 21 bits each
+    private static final int COUNTER_BITS = 21;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long ONE_TOTAL = 1L;
+    private static final long ONE_ARCHIVED = 1L << COUNTER_BITS;
+    private static final long ONE_CORRUPTED = 1L << (2 * COUNTER_BITS);
+    private final String name;
+    private volatile long size;
+    private volatile long date;
+    private volatile long counters;
+    // informed of each change of status, may be null
+    private final StatusCounts statusCounts;
+
+    public RawData(String _name) {
+        this(_name, null);
+    }
+
+    /**
+     * @param _statusCounts counts this raw data under its current status, and follows its changes of status
+     */
+    public RawData(String _name, StatusCounts _statusCounts) {
+        name = _name;
+        size = 0;
+        date = NO_DATE;
+        counters = 0;
+        statusCounts = _statusCounts;
+        if(statusCounts != null) statusCounts.add(getStatusValue(counters));
+    }
+
+    public RawData(String _name, Double _size, Date _date, Integer _nbFilesArchived, Integer _nbFilesTotal, Integer _nbFilesCorrupted) {
+        name = _name;
+        size = _size.longValue();
+        date = _date == null ? NO_DATE : _date.getTime();
+        counters = _nbFilesTotal * ONE_TOTAL + _nbFilesArchived * ONE_ARCHIVED + _nbFilesCorrupted * ONE_CORRUPTED;
+        statusCounts = null;
+    }
+
+    public void addFile(FileInfo _file, Boolean isArchived) {
+        SIZE.getAndAdd(this, _file.getSize());
+        // keep the earliest creation date
+        long creationTime = _file.getCreationTime();
+        long current = date;
+        while(creationTime < current && !DATE.compareAndSet(this, current, creationTime)) current = date;
+        addToCounters(isArchived ? ONE_TOTAL + ONE_ARCHIVED : ONE_TOTAL);
+    }
+
+    /**
+     * Called when the content of an archived file differs from the local file (checksum verification only)
+     */
+    public void addCorruptedFile() {
+        addToCounters(ONE_CORRUPTED);
+    }
+
+    private void addToCounters(long increment) {
+        long previous = COUNTERS.getAndAdd(this, increment);
+        if(statusCounts != null) statusCounts.move(getStatusValue(previous), getStatusValue(previous + increment));
+    }
+
+    private static int getCounter(long counters, long one) {
+        return (int) ((counters / one) & COUNTER_MASK);
+    }
+
+    private static Status getStatusValue(long counters) {
+        int nbFilesArchived = getCounter(counters, ONE_ARCHIVED);
+        if (getCounter(counters, ONE_CORRUPTED) > 0) return Status.CORRUPTED;
+        if (nbFilesArchived == 0) return Status.NOT_ARCHIVED;
+        if (nbFilesArchived == getCounter(counters, ONE_TOTAL)) return Status.FULLY_ARCHIVED;
+        return Status.PARTIALLY_ARCHIVED;
     }
 
     public String getName() {
         return name;
     }
     public Double getSize() {
-        return size;
+        return (double) size;
     }
     public Date getDate() {
-        return date;
+        long value = date;
+        return value == NO_DATE ? null : new Date(value);
+    }
+    public Integer getNbFilesArchived() {
+        return getCounter(counters, ONE_ARCHIVED);
+    }
+    public Integer getNbFilesTotal() {
+        return getCounter(counters, ONE_TOTAL);
+    }
+    public Integer getNbFilesCorrupted() {
+        return getCounter(counters, ONE_CORRUPTED);
+    }
+    public Status getStatusValue() {
+        return getStatusValue(counters);
     }
     public String getStatus() {
-        if(status == null) {
-            if (nbFilesArchived == 0) { status = Status.NOT_ARCHIVED;
-            } else if (nbFilesArchived == nbFilesTotal) { status = Status.FULLY_ARCHIVED;
-            } else { status = Status.PARTIALLY_ARCHIVED;
-            }
-        }
-        return status.toString();
+        return getStatusValue().toString();
     }
 }
@@ -0,0 +1,155 @@
+package fr.lsmbo.rawfinder;
+
+import java.util.*;
+
+/**
+ * Read-only index over the raw data of a finished scan, used to filter and sort very large result tables.
+ *
+ * The sort keys are extracted once into primitive arrays, the rows of each status are listed in advance, and the
+ * order of the rows for each column is computed once, so it should be built outside of the JavaFX thread. The names
+ * are kept in lower case and sorted, so a prefix search is a binary search.
+ */
+public class RawDataIndex {
+
+    public enum Column { NAME, SIZE, DATE, STATUS }
+
+    private final RawData[] rows;
+    private final String[] names;
+    private final long[] sizes;
+    private final long[] dates;
+    private final Status[] statuses;
+    private final int[] statusRanks;
+    private final Map<Status, int[]> rowsPerStatus = new EnumMap<>(Status.class);
+    // order of the rows for each column
+    private final int[][] orders = new int[Column.values().length][];
+
+    public RawDataIndex(Collection<RawData> rawData) {
+        rows = rawData.toArray(new RawData[0]);
+        names = new String[rows.length];
+        sizes = new long[rows.length];
+        dates = new long[rows.length];
+        statuses = new Status[rows.length];
+        statusRanks = new int[rows.length];
+
+        // statuses are sorted like their labels, as the table did before
+        List<Status> sortedStatuses = new ArrayList<>(Arrays.asList(Status.values()));
+        sortedStatuses.sort(Comparator.comparing(Status::toString));
+        Map<Status, List<Integer>> statusRows = new EnumMap<>(Status.class);
+        for(Status status : Status.values()) statusRows.put(status, new ArrayList<>());
+
+        for(int i = 0; i < rows.length; i++) {
+            RawData row = rows[i];
+            Status status = row.getStatusValue();
+            statuses[i] = status;
+            names[i] = row.getName().toLowerCase(Locale.ROOT);
+            sizes[i] = row.getSize().longValue();
+            dates[i] = row.getDate() == null ? Long.MIN_VALUE : row.getDate().getTime();
+            statusRanks[i] = sortedStatuses.indexOf(status);
+            statusRows.get(status).add(i);
+        }
+        statusRows.forEach((status, list) -> rowsPerStatus.put(status, list.stream().mapToInt(Integer::intValue).toArray()));
+
+        int[] scanOrder = IndexSort.identity(rows.length);
+        for(Column column : Column.values()) orders[column.ordinal()] = IndexSort.sort(scanOrder, rows.length, getComparator(column));
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * @param status only the rows with this status, or null for all the rows
+     * @param text only the rows whose name contains this text, case insensitive, or null for all the rows
+     * @param isPrefix true if the name must start with the text instead of containing it
+     * @param column the column to sort the rows with, or null to keep the order of the scan
+     * @param isAscending false to sort in the reverse order
+     * @return the matching rows, sorted
+     */
+    public List<RawData> select(Status status, String text, boolean isPrefix, Column column, boolean isAscending) {
+        String search = text == null ? "" : text.toLowerCase(Locale.ROOT);
+
+        // the smallest list of candidates comes from the name index or from the status index
+        int[] candidates;
+        int from = 0;
+        int to;
+        if(!search.isEmpty() && isPrefix) {
+            candidates = orders[Column.NAME.ordinal()];
+            from = lowerBound(candidates, search);
+            to = upperBound(candidates, search, from);
+        } else if(status != null) {
+            candidates = rowsPerStatus.get(status);
+            to = candidates.length;
+        } else {
+            candidates = null;
+            to = rows.length;
+        }
+
+        int[] selected = new int[to - from];
+        int nbSelected = 0;
+        for(int k = from; k < to; k++) {
+            int row = candidates == null ? k : candidates[k];
+            if(status != null && statuses[row] != status) continue;
+            if(!search.isEmpty() && !isPrefix && !names[row].contains(search)) continue;
+            selected[nbSelected++] = row;
+        }
+
+        int[] order;
+        if(column == null) {
+            // the order of the scan is the order of the row numbers
+            Arrays.sort(selected, 0, nbSelected);
+            order = selected;
+        } else if(nbSelected > rows.length / 8) {
+            // for a large selection, the precomputed order is faster than a new sort
+            boolean[] isSelected = new boolean[rows.length];
+            for(int k = 0; k < nbSelected; k++) isSelected[selected[k]] = true;
+            order = new int[nbSelected];
+            int position = 0;
+            for(int row : orders[column.ordinal()]) {
+                if(isSelected[row]) order[position++] = row;
+            }
+        } else {
+            order = IndexSort.sort(selected, nbSelected, getComparator(column));
+        }
+
+        List<RawData> selection = new ArrayList<>(nbSelected);
+        for(int k = 0; k < nbSelected; k++) selection.add(rows[order[isAscending ? k : nbSelected - 1 - k]]);
+        return selection;
+    }
+
+    private IndexSort.IndexComparator getComparator(Column column) {
+        switch (column) {
+            case NAME: return (r1, r2) -> names[r1].compareTo(names[r2]);
+            case SIZE: return (r1, r2) -> Long.compare(sizes[r1], sizes[r2]);
+            case DATE: return (r1, r2) -> Long.compare(dates[r1], dates[r2]);
+            default: return (r1, r2) -> Integer.compare(statusRanks[r1], statusRanks[r2]);
+        }
+    }
+
+    /**
+     * @return the first position in the name order whose name is not before the prefix
+     */
+    private int lowerBound(int[] nameOrder, String prefix) {
+        int low = 0;
+        int high = nameOrder.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(names[nameOrder[middle]].compareTo(prefix) < 0) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return the first position after the names starting with the prefix, these names being contiguous in the name order
+     */
+    private int upperBound(int[] nameOrder, String prefix, int from) {
+        int low = from;
+        int high = nameOrder.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(names[nameOrder[middle]].startsWith(prefix)) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,28 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes a report one row at a time, so the rows can be written while the data directory is being scanned.
+ * The raw files come first in any order, then each raw data once all its files are known.
+ */
+public interface ReportWriter extends Closeable {
+
+    void writeFile(FileInfo file, FileInfo archive, String rawFileName, Boolean checksumMatch) throws IOException;
+
+    void writeRawData(RawData rawData) throws IOException;
+
+    /**
+     * @return a writer for the given streaming format (Excel reports are written by Export)
+     */
+    static ReportWriter create(ExportFormat format, File outputFile) throws IOException {
+        switch (format) {
+            case CSV: return new CsvReportWriter(outputFile);
+            case JSONL: return new JsonLinesReportWriter(outputFile);
+            case BINARY: return new BinaryReportWriter(outputFile);
+            default: throw new IllegalArgumentException("Format " + format.getDescription() + " can not be written as a stream");
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Files found by a scan, stored by columns to keep the memory used per file low.
+ *
+ * Each file is a row: its directory and its name are numbers in tables of distinct directories and names, its
+ * attributes are kept in primitive arrays, and its archive is only the archive month (year * 12 + month): the archived
+ * file is always at the same relative path within its month directory. File and FileInfo objects are only created
+ * when a row is read, and are not kept.
+ *
+ * Rows are added by the scan threads without a common lock: each row is reserved by a counter and written in a page
+ * of rows, the pages are joined into single columns once the store is complete. Rows should only be read once the
+ * store is complete, except for the raw data.
+ */
+public class ResultStore {
+
+    private static final int NO_ARCHIVE = -1;
+    private static final byte CHECKSUM_VERIFIED = 1;
+    private static final byte CHECKSUM_MATCH = 2;
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    // same order as File.compareTo, which ignores the case on Windows
+    private static final Comparator<String> PATH_ORDER = File.separatorChar == '\\' ? String.CASE_INSENSITIVE_ORDER : Comparator.naturalOrder();
+
+    private final File rawDataDirectory;
+    private final File archiveDirectory;
+
+    // distinct directories and file names, numbered while rows are added, the tables are only built once complete
+    private List<File> directories = Collections.emptyList();
+    private List<String> names = Collections.emptyList();
+    private volatile Map<File, Integer> directoryNumbers = new ConcurrentHashMap<>();
+    private volatile Map<String, Integer> nameNumbers = new ConcurrentHashMap<>();
+    private final AtomicInteger nbDirectories = new AtomicInteger();
+    private final AtomicInteger nbNames = new AtomicInteger();
+
+    // rows added so far, in pages of PAGE_SIZE rows that never move, so each thread writes its rows without waiting
+    private final AtomicInteger nbRows = new AtomicInteger();
+    private volatile AtomicReferenceArray<Page> pages = new AtomicReferenceArray<>(16);
+
+    // one value per row, only set once complete
+    private int size = 0;
+    private int[] directoryColumn = new int[0];
+    private int[] nameColumn = new int[0];
+    private long[] sizeColumn = new long[0];
+    private long[] creationColumn = new long[0];
+    private long[] lastModifiedColumn = new long[0];
+    private int[] archiveMonthColumn = new int[0];
+    private long[] archiveSizeColumn = new long[0];
+    private long[] archiveCreationColumn = new long[0];
+    private long[] archiveLastModifiedColumn = new long[0];
+    private byte[] checksumColumn = new byte[0];
+    private RawData[] rawDataColumn = new RawData[0];
+
+    /**
+     * Same columns as the store, for PAGE_SIZE rows
+     */
+    private static class Page {
+        final int[] directories = new int[PAGE_SIZE];
+        final int[] names = new int[PAGE_SIZE];
+        final long[] sizes = new long[PAGE_SIZE];
+        final long[] creations = new long[PAGE_SIZE];
+        final long[] lastModifieds = new long[PAGE_SIZE];
+        final int[] archiveMonths = new int[PAGE_SIZE];
+        final long[] archiveSizes = new long[PAGE_SIZE];
+        final long[] archiveCreations = new long[PAGE_SIZE];
+        final long[] archiveLastModifieds = new long[PAGE_SIZE];
+        final byte[] checksums = new byte[PAGE_SIZE];
+        final RawData[] rawData = new RawData[PAGE_SIZE];
+    }
+
+    public ResultStore(File _rawDataDirectory, File _archiveDirectory) {
+        rawDataDirectory = _rawDataDirectory.getAbsoluteFile();
+        archiveDirectory = _archiveDirectory.getAbsoluteFile();
+    }
+
+    /**
+     * @param archive the archived version of the file, it must be in a month directory of the archive, or null
+     * @return the number of the new row
+     */
+    public int add(FileInfo file, FileInfo archive, RawData rawData) {
+        Map<File, Integer> currentDirectoryNumbers = directoryNumbers;
+        Map<String, Integer> currentNameNumbers = nameNumbers;
+        if(currentDirectoryNumbers == null || currentNameNumbers == null) throw new IllegalStateException("No file can be added once the store is complete");
+        int directory = getNumber(currentDirectoryNumbers, file.getFile().getAbsoluteFile().getParentFile(), nbDirectories);
+        int name = getNumber(currentNameNumbers, file.getName(), nbNames);
+        int archiveMonth = archive == null ? NO_ARCHIVE : getArchiveMonth(archive.getFile());
+        int row = nbRows.getAndIncrement();
+        Page page = getPage(row >>> PAGE_BITS);
+        int i = row & (PAGE_SIZE - 1);
+        page.directories[i] = directory;
+        page.names[i] = name;
+        page.sizes[i] = file.getSize();
+        page.creations[i] = file.getCreationTime();
+        page.lastModifieds[i] = file.getLastModifiedTime();
+        page.archiveMonths[i] = archiveMonth;
+        if(archiveMonth != NO_ARCHIVE) {
+            page.archiveSizes[i] = archive.getSize();
+            page.archiveCreations[i] = archive.getCreationTime();
+            page.archiveLastModifieds[i] = archive.getLastModifiedTime();
+        }
+        page.rawData[i] = rawData;
+        return row;
+    }
+
+    /**
+     * @return the number of the value in its table, a new number if the value is new
+     */
+    private static <T> int getNumber(Map<T, Integer> numbers, T value, AtomicInteger nbValues) {
+        // only lock the entry when the value is new
+        Integer number = numbers.get(value);
+        if(number == null) number = numbers.computeIfAbsent(value, key -> nbValues.getAndIncrement());
+        return number;
+    }
+
+    private Page getPage(int index) {
+        AtomicReferenceArray<Page> currentPages = pages;
+        Page page = index < currentPages.length() ? currentPages.get(index) : null;
+        return page != null ? page : newPage(index);
+    }
+
+    /**
+     * Only called once per page, by the first thread that reaches it
+     */
+    private synchronized Page newPage(int index) {
+        if(index >= pages.length()) {
+            AtomicReferenceArray<Page> newPages = new AtomicReferenceArray<>(Math.max(index + 1, pages.length() * 2));
+            for(int i = 0; i < pages.length(); i++) newPages.set(i, pages.get(i));
+            pages = newPages;
+        }
+        Page page = pages.get(index);
+        if(page == null) {
+            page = new Page();
+            pages.set(index, page);
+        }
+        return page;
+    }
+
+    public synchronized void setChecksumMatch(int row, boolean isMatching) {
+        byte checksum = (byte) (CHECKSUM_VERIFIED | (isMatching ? CHECKSUM_MATCH : 0));
+        if(pages != null) pages.get(row >>> PAGE_BITS).checksums[row & (PAGE_SIZE - 1)] = checksum;
+        else checksumColumn[row] = checksum;
+    }
+
+    /**
+     * Joins the pages into single columns, and releases the memory only needed while rows are added.
+     * All the threads adding rows must have finished.
+     */
+    public synchronized void complete() {
+        if(pages == null) return;
+        size = nbRows.get();
+        directoryColumn = join(page -> page.directories, int[]::new);
+        nameColumn = join(page -> page.names, int[]::new);
+        sizeColumn = join(page -> page.sizes, long[]::new);
+        creationColumn = join(page -> page.creations, long[]::new);
+        lastModifiedColumn = join(page -> page.lastModifieds, long[]::new);
+        archiveMonthColumn = join(page -> page.archiveMonths, int[]::new);
+        archiveSizeColumn = join(page -> page.archiveSizes, long[]::new);
+        archiveCreationColumn = join(page -> page.archiveCreations, long[]::new);
+        archiveLastModifiedColumn = join(page -> page.archiveLastModifieds, long[]::new);
+        checksumColumn = join(page -> page.checksums, byte[]::new);
+        rawDataColumn = join(page -> page.rawData, RawData[]::new);
+        pages = null;
+        directories = getTable(directoryNumbers, new File[nbDirectories.get()]);
+        names = getTable(nameNumbers, new String[nbNames.get()]);
+        directoryNumbers = null;
+        nameNumbers = null;
+    }
+
+    /**
+     * @return the values of a column of all the pages, in a single array
+     */
+    private <A> A join(Function<Page, A> column, IntFunction<A> newColumn) {
+        A joined = newColumn.apply(size);
+        for(int firstRow = 0; firstRow < size; firstRow += PAGE_SIZE) {
+            System.arraycopy(column.apply(pages.get(firstRow >>> PAGE_BITS)), 0, joined, firstRow, Math.min(PAGE_SIZE, size - firstRow));
+        }
+        return joined;
+    }
+
+    /**
+     * @return the values ordered by their number
+     */
+    private static <T> List<T> getTable(Map<T, Integer> numbers, T[] table) {
+        numbers.forEach((value, number) -> table[number] = value);
+        return Arrays.asList(table);
+    }
+
+    private int getArchiveMonth(File archive) {
+        Path relativePath = archiveDirectory.toPath().relativize(archive.getAbsoluteFile().toPath());
+        int year = Integer.parseInt(relativePath.getName(0).toString());
+        int month = Arrays.asList(Global.MONTH_NAMES).indexOf(relativePath.getName(1).toString());
+        return year * 12 + month;
+    }
+
+    public int size() {
+        return nbRows.get();
+    }
+
+    /**
+     * @return the row numbers sorted by directory, then by file name, each directory coming just before its subdirectories
+     */
+    public synchronized int[] getSortedRows() {
+        // the distinct directories and names are sorted once, then the rows are only compared on their ranks
+        String[] directoryPaths = new String[directories.size()];
+        // with a trailing separator, the subdirectories of a directory are not mixed with its siblings (ie. 'a', 'a-b', 'a/c')
+        for(int directory = 0; directory < directoryPaths.length; directory++) directoryPaths[directory] = directories.get(directory).getPath() + File.separator;
+        int[] directoryRanks = getRanks(directoryPaths.length, (directory1, directory2) -> PATH_ORDER.compare(directoryPaths[directory1], directoryPaths[directory2]));
+        int[] nameRanks = getRanks(names.size(), (name1, name2) -> PATH_ORDER.compare(names.get(name1), names.get(name2)));
+        return IndexSort.sort(IndexSort.identity(size), size, (row1, row2) -> {
+            int comparison = Integer.compare(directoryRanks[directoryColumn[row1]], directoryRanks[directoryColumn[row2]]);
+            return comparison != 0 ? comparison : Integer.compare(nameRanks[nameColumn[row1]], nameRanks[nameColumn[row2]]);
+        });
+    }
+
+    /**
+     * @return the rank of each of the n values once sorted
+     */
+    private static int[] getRanks(int n, IndexSort.IndexComparator comparator) {
+        int[] order = IndexSort.sort(IndexSort.identity(n), n, comparator);
+        int[] ranks = new int[n];
+        for(int rank = 0; rank < n; rank++) ranks[order[rank]] = rank;
+        return ranks;
+    }
+
+    public File getFile(int row) {
+        return new File(directories.get(directoryColumn[row]), names.get(nameColumn[row]));
+    }
+
+    /**
+     * @return the absolute path of the file, without creating a File
+     */
+    public String getPath(int row) {
+        return getPath(directories.get(directoryColumn[row]).getPath(), names.get(nameColumn[row]));
+    }
+
+    private static String getPath(String directory, String name) {
+        return directory.endsWith(File.separator) ? directory + name : directory + File.separator + name;
+    }
+
+    public FileInfo getFileInfo(int row) {
+        return new FileInfo(getFile(row), false, sizeColumn[row], creationColumn[row], lastModifiedColumn[row]);
+    }
+
+    public long getSize(int row) {
+        return sizeColumn[row];
+    }
+
+    public long getCreationTime(int row) {
+        return creationColumn[row];
+    }
+
+    public long getLastModifiedTime(int row) {
+        return lastModifiedColumn[row];
+    }
+
+    public boolean hasArchive(int row) {
+        return archiveMonthColumn[row] != NO_ARCHIVE;
+    }
+
+    /**
+     * @return the archived version of the file, or null if it has not been found
+     */
+    public FileInfo getArchiveInfo(int row) {
+        if(!hasArchive(row)) return null;
+        return new FileInfo(new File(getArchivePath(row)), false, archiveSizeColumn[row], archiveCreationColumn[row], archiveLastModifiedColumn[row]);
+    }
+
+    /**
+     * @return the absolute path of the archived file, without creating a File, or null if it has not been found
+     */
+    public String getArchivePath(int row) {
+        int archiveMonth = archiveMonthColumn[row];
+        if(archiveMonth == NO_ARCHIVE) return null;
+        // same path as the one searched by the scan
+        String monthDirectory = archiveDirectory.getAbsolutePath() + File.separator + (archiveMonth / 12) + File.separator + Global.MONTH_NAMES[archiveMonth % 12];
+        String directory = directories.get(directoryColumn[row]).getPath();
+        String rawDataPath = rawDataDirectory.getPath();
+        String relativeDirectory;
+        if(directory.equals(rawDataPath)) relativeDirectory = "";
+        else if(directory.startsWith(rawDataPath) && directory.startsWith(File.separator, rawDataPath.length())) relativeDirectory = directory.substring(rawDataPath.length() + 1);
+        else relativeDirectory = rawDataDirectory.toPath().relativize(directories.get(directoryColumn[row]).toPath()).toString();
+        return getPath(relativeDirectory.isEmpty() ? monthDirectory : getPath(monthDirectory, relativeDirectory), names.get(nameColumn[row]));
+    }
+
+    public long getArchiveSize(int row) {
+        return archiveSizeColumn[row];
+    }
+
+    public long getArchiveCreationTime(int row) {
+        return archiveCreationColumn[row];
+    }
+
+    /**
+     * @return true if the archived file has the same content, null if it has not been verified
+     */
+    public Boolean getChecksumMatch(int row) {
+        byte checksum = checksumColumn[row];
+        if((checksum & CHECKSUM_VERIFIED) == 0) return null;
+        return (checksum & CHECKSUM_MATCH) != 0;
+    }
+
+    public RawData getRawData(int row) {
+        return rawDataColumn[row];
+    }
+
+    public String getRawFileName(int row) {
+        return rawDataColumn[row].getName();
+    }
+}
@@ -0,0 +1,16 @@
+package fr.lsmbo.rawfinder;
+
+/**
+ * Receives each raw file as soon as the scan has searched it in the archives (and verified its content if requested).
+ * It is called by the last step of the scan, from a single thread.
+ */
+public interface ScanListener {
+
+    /**
+     * @param file the raw file found in the data directory
+     * @param archive its archived version, or null if there is none
+     * @param rawFileName the name of the raw data containing the file
+     * @param checksumMatch true if both files have the same content, null if it has not been verified
+     */
+    void fileFound(FileInfo file, FileInfo archive, String rawFileName, Boolean checksumMatch);
+}
@@ -0,0 +1,104 @@
+package fr.lsmbo.rawfinder;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a scan, updated by the workers without any lock, and an estimation of the remaining time
+ * based on the totals of the previous complete scan of the same directory.
+ */
+public class ScanProgress {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ScanProgress.class);
+
+    final LongAdder nbDirectories = new LongAdder();
+    final LongAdder nbFiles = new LongAdder();
+    final LongAdder nbRawFiles = new LongAdder();
+    final LongAdder nbProbes = new LongAdder();
+    final LongAdder nbBytes = new LongAdder();
+    private final long startTime = System.currentTimeMillis();
+    private final Totals previousTotals;
+    private volatile boolean isFinished = false;
+
+    /**
+     * What a complete scan has found, saved for the next one
+     */
+    private static class Totals {
+        String rawDataDirectory;
+        long nbDirectories;
+        long nbFiles;
+        long duration;
+    }
+
+    private ScanProgress(Totals _previousTotals) {
+        previousTotals = _previousTotals;
+    }
+
+    /**
+     * @return the progress of the scan, or the totals of the previous scan of this directory if there is one
+     */
+    public static ScanProgress load(File totalsFile, File rawDataDirectory) {
+        Totals totals = null;
+        if(totalsFile.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(totalsFile), StandardCharsets.UTF_8)) {
+                totals = new Gson().fromJson(reader, Totals.class);
+                if(totals != null && !rawDataDirectory.getAbsolutePath().equals(totals.rawDataDirectory)) totals = null;
+            } catch (Throwable t) {
+                logger.warn("Totals of the previous scan could not be read, the remaining time will not be estimated", t);
+            }
+        }
+        return new ScanProgress(totals);
+    }
+
+    public void save(File totalsFile, File rawDataDirectory) {
+        Totals totals = new Totals();
+        totals.rawDataDirectory = rawDataDirectory.getAbsolutePath();
+        totals.nbDirectories = nbDirectories.sum();
+        totals.nbFiles = nbFiles.sum();
+        totals.duration = System.currentTimeMillis() - startTime;
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(totalsFile), StandardCharsets.UTF_8)) {
+            new Gson().toJson(totals, writer);
+        } catch (IOException ioe) {
+            logger.warn("Totals of the scan could not be saved", ioe);
+        }
+    }
+
+    public void finish() {
+        isFinished = true;
+    }
+
+    /**
+     * @return the part of the files already seen compared to the previous scan, or -1 if it is unknown
+     */
+    public double getProgress() {
+        if(isFinished) return 1;
+        if(previousTotals == null || previousTotals.nbFiles == 0) return -1;
+        // there may be more files than last time, the scan is not over until it says so
+        return Math.min(0.99, (double) nbFiles.sum() / previousTotals.nbFiles);
+    }
+
+    public String getMessage() {
+        DecimalFormat format = new DecimalFormat("#,##0");
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        long files = nbFiles.sum();
+        String message = format.format(nbDirectories.sum()) + " directories, " + format.format(files) + " files, " +
+                format.format(nbRawFiles.sum()) + " raw files (" + Global.formatSize(nbBytes.sum()) + "), " +
+                format.format(nbProbes.sum()) + " archives searched, " + format.format(files * 1000 / elapsed) + " files/s";
+        double progress = getProgress();
+        if(progress > 0 && progress < 1) message += ", about " + formatDuration((long) (elapsed * (1 - progress) / progress)) + " left";
+        return message;
+    }
+
+    private static String formatDuration(long duration) {
+        long seconds = duration / 1000;
+        if(seconds < 60) return seconds + " s";
+        if(seconds < 3600) return (seconds / 60) + " min";
+        return (seconds / 3600) + " h " + (seconds % 3600 / 60) + " min";
+    }
+}
@@ -0,0 +1,121 @@
+package fr.lsmbo.rawfinder;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content of the data directory as seen by the previous scan, saved next to the reports.
+ *
+ * A directory whose modification date has not changed still contains the same items, so it does not need to be
+ * listed again. The attributes of its files are still read again, as writing into a file does not change the date
+ * of its directory. The archive being append-only, a file that has not changed since it was found archived with
+ * the correct size does not need to be searched again. Any other file is searched in the archives again.
+ */
+public class ScanSnapshot {
+
+    protected static final Logger logger = LoggerFactory.getLogger(ScanSnapshot.class);
+
+    public static class DirectoryState {
+        long lastModified;
+        List<String> subDirectories = new ArrayList<>();
+        List<FileState> files = new ArrayList<>();
+    }
+
+    public static class FileState {
+        String name;
+        long size;
+        long creationTime;
+        long lastModified;
+        String archive;
+        long archiveSize;
+        long archiveCreationTime;
+        long archiveLastModified;
+
+        FileState(FileInfo file) {
+            name = file.getName();
+            size = file.getSize();
+            creationTime = file.getCreationTime();
+            lastModified = file.getLastModifiedTime();
+        }
+
+        void setArchive(FileInfo _archive) {
+            archive = _archive.getFile().getPath();
+            archiveSize = _archive.getSize();
+            archiveCreationTime = _archive.getCreationTime();
+            archiveLastModified = _archive.getLastModifiedTime();
+        }
+
+        /**
+         * @param file current attributes of the file
+         * @return the archived version found by the previous scan, only if its size was correct and the file has not changed since
+         */
+        FileInfo getArchive(FileInfo file) {
+            if(archive == null || archiveSize != size) return null;
+            if(file.getSize() != size || file.getLastModifiedTime() != lastModified) return null;
+            return new FileInfo(new File(archive), false, archiveSize, archiveCreationTime, archiveLastModified);
+        }
+    }
+
+    private String rawDataDirectory;
+    private Map<String, DirectoryState> directories = new ConcurrentHashMap<>();
+
+    public ScanSnapshot(File _rawDataDirectory) {
+        rawDataDirectory = _rawDataDirectory.getAbsolutePath();
+    }
+
+    public DirectoryState get(File directory) {
+        return directories.get(directory.getAbsolutePath());
+    }
+
+    public void put(File directory, DirectoryState state) {
+        directories.put(directory.getAbsolutePath(), state);
+    }
+
+    /**
+     * @return the snapshot of the previous scan of the given directory, or null if there is none
+     */
+    public static ScanSnapshot load(File snapshotFile, File rawDataDirectory) {
+        if(!snapshotFile.exists()) return null;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(snapshotFile)), StandardCharsets.UTF_8))) {
+            ScanSnapshot snapshot = new Gson().fromJson(reader, ScanSnapshot.class);
+            if(snapshot == null || !rawDataDirectory.getAbsolutePath().equals(snapshot.rawDataDirectory)) {
+                logger.info("Previous scan snapshot does not match the data directory, a full scan will be done");
+                return null;
+            }
+            logger.info("Previous scan snapshot contains " + snapshot.directories.size() + " directories");
+            return snapshot;
+        } catch (Throwable t) {
+            logger.warn("Previous scan snapshot could not be read, a full scan will be done", t);
+        }
+        return null;
+    }
+
+    public void save(File snapshotFile) {
+        File temporaryFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(temporaryFile)), StandardCharsets.UTF_8))) {
+            new Gson().toJson(this, writer);
+        } catch (Throwable t) {
+            logger.warn("Scan snapshot could not be saved", t);
+            return;
+        }
+        try {
+            Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Scan snapshot has been saved to '" + snapshotFile.getName() + "'");
+        } catch (IOException ioe) {
+            logger.warn("Scan snapshot could not be saved", ioe);
+        }
+    }
+}
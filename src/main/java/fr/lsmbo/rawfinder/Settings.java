@@ -12,6 +12,21 @@ public class Settings {
     private String folderLikeRawDataTemplate;
     private String folderLikeRawDataExtension;
     private String fileLikeRawDataTemplate;
+    private Integer nbThreads;
+    private Integer archiveCacheSize;
+    private Boolean useArchiveIndex;
+    private Boolean incrementalScan;
+    private Integer maxRowsPerReport;
+    private Boolean verifyChecksums;
+    private Integer nbVerifyThreads;
+    private Integer nbProbeThreads;
+    private Integer pipelineQueueSize;
+    private Boolean useNativeListing;
+    private List<String> excludedDirectories;
+    private Integer maxDepth;
+    private String dateWindowType;
+    private String dateWindowStart;
+    private String dateWindowEnd;
 
     public Settings(File rawDataDirectory, File archiveDirectory, Boolean isFolderLike, List<String> folderLikeRawDataTemplate, List<String> fileLikeRawDataTemplate, File defaultReportDirectory) {
         this.rawDataDirectory = rawDataDirectory == null ? "" : rawDataDirectory.getAbsolutePath();
@@ -80,6 +95,126 @@ public class Settings {
         this.fileLikeRawDataTemplate = fileLikeRawDataTemplate;
     }
 
+    public Integer getNbThreads() {
+        return nbThreads;
+    }
+
+    public void setNbThreads(Integer nbThreads) {
+        this.nbThreads = nbThreads;
+    }
+
+    public Integer getArchiveCacheSize() {
+        return archiveCacheSize;
+    }
+
+    public void setArchiveCacheSize(Integer archiveCacheSize) {
+        this.archiveCacheSize = archiveCacheSize;
+    }
+
+    public Boolean getUseArchiveIndex() {
+        return useArchiveIndex;
+    }
+
+    public void setUseArchiveIndex(Boolean useArchiveIndex) {
+        this.useArchiveIndex = useArchiveIndex;
+    }
+
+    public Boolean getIncrementalScan() {
+        return incrementalScan;
+    }
+
+    public void setIncrementalScan(Boolean incrementalScan) {
+        this.incrementalScan = incrementalScan;
+    }
+
+    public Integer getMaxRowsPerReport() {
+        return maxRowsPerReport;
+    }
+
+    public void setMaxRowsPerReport(Integer maxRowsPerReport) {
+        this.maxRowsPerReport = maxRowsPerReport;
+    }
+
+    public Boolean getVerifyChecksums() {
+        return verifyChecksums;
+    }
+
+    public void setVerifyChecksums(Boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+    }
+
+    public Integer getNbVerifyThreads() {
+        return nbVerifyThreads;
+    }
+
+    public void setNbVerifyThreads(Integer nbVerifyThreads) {
+        this.nbVerifyThreads = nbVerifyThreads;
+    }
+
+    public Integer getNbProbeThreads() {
+        return nbProbeThreads;
+    }
+
+    public void setNbProbeThreads(Integer nbProbeThreads) {
+        this.nbProbeThreads = nbProbeThreads;
+    }
+
+    public Integer getPipelineQueueSize() {
+        return pipelineQueueSize;
+    }
+
+    public void setPipelineQueueSize(Integer pipelineQueueSize) {
+        this.pipelineQueueSize = pipelineQueueSize;
+    }
+
+    public Boolean getUseNativeListing() {
+        return useNativeListing;
+    }
+
+    public void setUseNativeListing(Boolean useNativeListing) {
+        this.useNativeListing = useNativeListing;
+    }
+
+    public List<String> getExcludedDirectories() {
+        return excludedDirectories;
+    }
+
+    public void setExcludedDirectories(List<String> excludedDirectories) {
+        this.excludedDirectories = excludedDirectories;
+    }
+
+    public Integer getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(Integer maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public String getDateWindowType() {
+        return dateWindowType;
+    }
+
+    public void setDateWindowType(String dateWindowType) {
+        this.dateWindowType = dateWindowType;
+    }
+
+    public String getDateWindowStart() {
+        return dateWindowStart;
+    }
+
+    public void setDateWindowStart(String dateWindowStart) {
+        this.dateWindowStart = dateWindowStart;
+    }
+
+    public String getDateWindowEnd() {
+        return dateWindowEnd;
+    }
+
+    public void setDateWindowEnd(String dateWindowEnd) {
+        this.dateWindowEnd = dateWindowEnd;
+    }
+
     public String toString() {
         return  "\nrawDataDirectory: " + rawDataDirectory +
                 "\narchiveDirectory: " + archiveDirectory +
@@ -87,6 +222,21 @@ public class Settings {
                 "\nisFolderLike: " + isFolderLike +
                 "\nfolderLikeRawDataTemplate: " + folderLikeRawDataTemplate +
                 "\nfolderLikeRawDataExtension: " + folderLikeRawDataExtension +
-                "\nfileLikeRawDataTemplate: " + fileLikeRawDataTemplate;
+                "\nfileLikeRawDataTemplate: " + fileLikeRawDataTemplate +
+                "\nnbThreads: " + nbThreads +
+                "\narchiveCacheSize: " + archiveCacheSize +
+                "\nuseArchiveIndex: " + useArchiveIndex +
+                "\nincrementalScan: " + incrementalScan +
+                "\nmaxRowsPerReport: " + maxRowsPerReport +
+                "\nverifyChecksums: " + verifyChecksums +
+                "\nnbVerifyThreads: " + nbVerifyThreads +
+                "\nnbProbeThreads: " + nbProbeThreads +
+                "\npipelineQueueSize: " + pipelineQueueSize +
+                "\nuseNativeListing: " + useNativeListing +
+                "\nexcludedDirectories: " + excludedDirectories +
+                "\nmaxDepth: " + maxDepth +
+                "\ndateWindowType: " + dateWindowType +
+                "\ndateWindowStart: " + dateWindowStart +
+                "\ndateWindowEnd: " + dateWindowEnd;
     }
 }
@@ -0,0 +1,45 @@
+package fr.lsmbo.rawfinder;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of raw data per status, updated by the raw data themselves each time their status changes,
+ * so the counts can be read at any time without going through all the raw data.
+ */
+public class StatusCounts {
+
+    private final Map<Status, LongAdder> counts = new EnumMap<>(Status.class);
+
+    public StatusCounts() {
+        for(Status status : Status.values()) counts.put(status, new LongAdder());
+    }
+
+    void add(Status status) {
+        counts.get(status).increment();
+    }
+
+    void move(Status from, Status to) {
+        if(from == to) return;
+        counts.get(from).decrement();
+        counts.get(to).increment();
+    }
+
+    public long get(Status status) {
+        return counts.get(status).sum();
+    }
+
+    /**
+     * @return the number of raw data per status name, statuses without any raw data are omitted
+     */
+    public HashMap<String, Integer> toMap() {
+        HashMap<String, Integer> map = new HashMap<>();
+        counts.forEach((status, count) -> {
+            int value = count.intValue();
+            if(value > 0) map.put(status.toString(), value);
+        });
+        return map;
+    }
+}
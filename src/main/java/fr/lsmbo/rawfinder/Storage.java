@@ -0,0 +1,26 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+
+/**
+ * File system as seen by the scan: listing of the directories and reading of the file attributes.
+ * The scan only goes through this interface, so it can also run against a simulated storage (ie. in the benchmarks).
+ */
+public interface Storage {
+
+    /**
+     * Lists a directory, the attributes of each item are read while iterating.
+     * An item removed since the directory has been read (or a link to nothing) is skipped. An item whose attributes
+     * can not be read is thrown by next() as a DirectoryIteratorException, the following items can still be read.
+     * A failure of the listing itself is thrown by hasNext() as a DirectoryIteratorException.
+     * @throws java.nio.file.NoSuchFileException if the directory does not exist
+     */
+    DirectoryStream<FileInfo> list(File directory) throws IOException;
+
+    /**
+     * @return the attributes of the file, or null if it does not exist
+     */
+    FileInfo read(File file) throws IOException;
+}
@@ -0,0 +1,70 @@
+package fr.lsmbo.rawfinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Writes a CSV, JSON Lines or binary report. When it is registered as the listener of a DataParser, the raw files
+ * are written while the data directory is being scanned, and the raw data are written at the end of the scan.
+ */
+public class StreamingExport implements ScanListener, Closeable {
+
+    protected static final Logger logger = LoggerFactory.getLogger(StreamingExport.class);
+    private final ReportWriter writer;
+    private final File outputFile;
+    private IOException error = null;
+    private long nbFiles = 0;
+
+    public StreamingExport(ExportFormat format, File _outputFile) throws IOException {
+        outputFile = _outputFile;
+        writer = ReportWriter.create(format, outputFile);
+        logger.info("Writing " + format.getDescription() + " output file " + outputFile.getName());
+    }
+
+    @Override
+    public synchronized void fileFound(FileInfo file, FileInfo archive, String rawFileName, Boolean checksumMatch) {
+        // the scan is not interrupted by a writing error, it is thrown when the export is finished
+        if(error != null) return;
+        try {
+            writer.writeFile(file, archive, rawFileName, checksumMatch);
+            nbFiles++;
+        } catch (IOException ioe) {
+            error = ioe;
+        }
+    }
+
+    /**
+     * Writes the raw data once the scan is over
+     */
+    public synchronized void finish(DataParser parser) throws IOException {
+        if(error != null) throw error;
+        for(RawData rawData : new TreeMap<>(parser.getAsRawData()).values()) {
+            writer.writeRawData(rawData);
+        }
+        logger.info(nbFiles + " files and " + parser.getAsRawData().size() + " raw data written to " + outputFile.getName());
+        if(!parser.isComplete()) logger.warn("The scan has been cancelled, " + outputFile.getName() + " is incomplete");
+    }
+
+    /**
+     * Writes the result of a scan that is already over
+     */
+    public void write(DataParser parser) throws IOException {
+        ResultStore results = parser.getResults();
+        for(int file : results.getSortedRows()) {
+            if(Thread.currentThread().isInterrupted()) throw new CancellationException("Export has been cancelled");
+            fileFound(results.getFileInfo(file), results.getArchiveInfo(file), results.getRawFileName(file), results.getChecksumMatch(file));
+        }
+        finish(parser);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,28 @@
+package fr.lsmbo.rawfinder;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Raw data name templates compiled once into a single regular expression,
+ * a name matches if it fully matches any of the templates.
+ */
+public class TemplateMatcher {
+
+    private final List<String> templates;
+    private final Pattern pattern;
+
+    public TemplateMatcher(List<String> _templates) {
+        templates = _templates;
+        pattern = Pattern.compile(templates.stream().map(template -> "(?:" + template + ")").collect(Collectors.joining("|")));
+    }
+
+    public List<String> getTemplates() {
+        return templates;
+    }
+
+    public boolean matches(String name) {
+        return pattern.matcher(name).matches();
+    }
+}
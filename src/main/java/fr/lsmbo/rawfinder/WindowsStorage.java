@@ -0,0 +1,130 @@
+package fr.lsmbo.rawfinder;
+
+import com.sun.jna.Memory;
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.Kernel32Util;
+import com.sun.jna.platform.win32.WinBase;
+import com.sun.jna.platform.win32.WinDef;
+import com.sun.jna.platform.win32.WinError;
+import com.sun.jna.platform.win32.WinNT;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Local file system and shares listed with FindFirstFileEx, which returns the size and the dates of the items with
+ * their names, and asks the share for large blocks of items at once.
+ * As the local storage, links are followed: their attributes are read on their own.
+ */
+class WindowsStorage implements Storage {
+
+    // not declared by jna-platform
+    private static final int FIND_FIRST_EX_LARGE_FETCH = 2;
+    // beyond this length the paths need the long path prefix
+    private static final int MAX_SHORT_PATH = 247;
+
+    private final Kernel32 kernel32 = Kernel32.INSTANCE;
+
+    @Override
+    public DirectoryStream<FileInfo> list(File directory) throws IOException {
+        Memory buffer = new Memory(WinBase.WIN32_FIND_DATA.sizeOf());
+        // the alternate (8.3) names are not needed, which saves a lookup per item
+        WinNT.HANDLE handle = kernel32.FindFirstFileEx(getLongPath(new File(directory, "*")), WinBase.FindExInfoBasic, buffer,
+                WinBase.FindExSearchNameMatch, null, new WinDef.DWORD(FIND_FIRST_EX_LARGE_FETCH));
+        if(WinBase.INVALID_HANDLE_VALUE.equals(handle)) throw getException(directory, kernel32.GetLastError());
+        return new DirectoryStream<FileInfo>() {
+            private boolean isClosed = false;
+
+            @Override
+            public Iterator<FileInfo> iterator() {
+                return new Iterator<FileInfo>() {
+                    // the first item has been read by FindFirstFileEx
+                    private boolean hasItem = true;
+                    private FileInfo next = null;
+                    // the attributes of the next item could not be read
+                    private IOException error = null;
+
+                    @Override
+                    public boolean hasNext() {
+                        while(next == null && error == null && !isClosed) {
+                            if(!hasItem && !kernel32.FindNextFile(handle, buffer)) {
+                                int error = kernel32.GetLastError();
+                                if(error != WinError.ERROR_NO_MORE_FILES) throw new DirectoryIteratorException(getException(directory, error));
+                                return false;
+                            }
+                            hasItem = false;
+                            try {
+                                next = toFileInfo(directory, new WinBase.WIN32_FIND_DATA(buffer));
+                            } catch (IOException ioe) {
+                                error = ioe;
+                            }
+                        }
+                        return next != null || error != null;
+                    }
+
+                    @Override
+                    public FileInfo next() {
+                        if(!hasNext()) throw new NoSuchElementException();
+                        if(error != null) {
+                            IOException itemError = error;
+                            error = null;
+                            throw new DirectoryIteratorException(itemError);
+                        }
+                        FileInfo item = next;
+                        next = null;
+                        return item;
+                    }
+                };
+            }
+
+            @Override
+            public synchronized void close() {
+                if(isClosed) return;
+                isClosed = true;
+                kernel32.FindClose(handle);
+            }
+        };
+    }
+
+    /**
+     * @return the attributes of an item of the directory, or null for the current and parent directories
+     * (and for a link to nothing)
+     */
+    private FileInfo toFileInfo(File directory, WinBase.WIN32_FIND_DATA data) throws IOException {
+        String name = data.getFileName();
+        if(name.equals(".") || name.equals("..")) return null;
+        File file = new File(directory, name);
+        if((data.dwFileAttributes & WinNT.FILE_ATTRIBUTE_REPARSE_POINT) != 0) {
+            // the attributes found are the ones of the link itself, the ones of its target are read on their own
+            return FileInfo.read(file);
+        }
+        boolean isDirectory = (data.dwFileAttributes & WinNT.FILE_ATTRIBUTE_DIRECTORY) != 0;
+        long size = ((long) data.nFileSizeHigh << 32) | (data.nFileSizeLow & 0xffffffffL);
+        return new FileInfo(file, isDirectory, size, data.ftCreationTime.toTime(), data.ftLastWriteTime.toTime());
+    }
+
+    @Override
+    public FileInfo read(File file) throws IOException {
+        return FileInfo.read(file);
+    }
+
+    private static String getLongPath(File file) {
+        String path = file.getAbsolutePath();
+        if(path.length() <= MAX_SHORT_PATH || path.startsWith("\\\\?\\")) return path;
+        if(path.startsWith("\\\\")) return "\\\\?\\UNC\\" + path.substring(2);
+        return "\\\\?\\" + path;
+    }
+
+    private static IOException getException(File file, int error) {
+        switch (error) {
+            case WinError.ERROR_FILE_NOT_FOUND:
+            case WinError.ERROR_PATH_NOT_FOUND: return new NoSuchFileException(file.getPath());
+            case WinError.ERROR_DIRECTORY: return new NotDirectoryException(file.getPath());
+            case WinError.ERROR_ACCESS_DENIED: return new AccessDeniedException(file.getPath());
+            default: return new FileSystemException(file.getPath(), null, Kernel32Util.formatMessage(error));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class ArchiveCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private final AtomicInteger nbListings = new AtomicInteger();
+    // local file system, counting the listings
+    private final Storage storage = new Storage() {
+        @Override
+        public DirectoryStream<FileInfo> list(File directory) throws IOException {
+            nbListings.incrementAndGet();
+            return LocalStorage.INSTANCE.list(directory);
+        }
+
+        @Override
+        public FileInfo read(File file) throws IOException {
+            return LocalStorage.INSTANCE.read(file);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("2020", "septembre");
+        Files.write(new File(directory, "Qa.raw").toPath(), new byte[10]);
+        Files.write(new File(directory, "Qz.raw").toPath(), new byte[20]);
+    }
+
+    @Test
+    public void listsEachDirectoryOnce() {
+        ArchiveCache cache = new ArchiveCache(10, storage);
+        assertEquals(10, cache.get(new File(directory, "Qa.raw")).getSize());
+        assertEquals(20, cache.get(new File(directory, "Qz.raw")).getSize());
+        assertNull(cache.get(new File(directory, "Qm.raw")));
+        // a missing directory is remembered as an empty one
+        assertNull(cache.get(new File(folder.getRoot(), "2020/octobre/Qa.raw")));
+        assertNull(cache.get(new File(folder.getRoot(), "2020/octobre/Qz.raw")));
+        assertEquals(2, nbListings.get());
+    }
+
+    @Test
+    public void doesNotKeepAListingThatFailedPartway() throws IOException {
+        try {
+            // the attributes of a link to itself can not be read
+            Files.createSymbolicLink(new File(directory, "Qm.raw").toPath(), new File(directory, "Qm.raw").toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue("symbolic links can not be created here", false);
+        }
+        ArchiveCache cache = new ArchiveCache(10, storage);
+        // the readable items are still found
+        assertEquals(10, cache.get(new File(directory, "Qa.raw")).getSize());
+        assertEquals(20, cache.get(new File(directory, "Qz.raw")).getSize());
+        assertEquals(2, nbListings.get());
+        // once the item can be read, the directory is complete and kept
+        Files.delete(new File(directory, "Qm.raw").toPath());
+        Files.write(new File(directory, "Qm.raw").toPath(), new byte[30]);
+        assertEquals(30, cache.get(new File(directory, "Qm.raw")).getSize());
+        assertEquals(10, cache.get(new File(directory, "Qa.raw")).getSize());
+        assertEquals(3, nbListings.get());
+    }
+}
@@ -0,0 +1,54 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+public class ArchiveIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File archiveDirectory;
+    private File indexFile;
+    private File monthDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        archiveDirectory = folder.newFolder("archives");
+        indexFile = new File(folder.getRoot(), "archives.index");
+        // the current month is read again each time the index is opened
+        LocalDate today = LocalDate.now();
+        monthDirectory = new File(archiveDirectory, today.getYear() + "/" + Global.MONTH_NAMES[today.getMonthValue() - 1]);
+        Files.createDirectories(new File(monthDirectory, "inst").toPath());
+        Files.write(new File(monthDirectory, "inst/Qa.raw").toPath(), new byte[10]);
+    }
+
+    @Test
+    public void findsTheIndexedFiles() throws IOException {
+        ArchiveIndex index = ArchiveIndex.open(indexFile, archiveDirectory);
+        assertEquals(10, index.get(new File(monthDirectory, "inst/Qa.raw")).getSize());
+        assertNull(index.get(new File(monthDirectory, "inst/Qz.raw")));
+        assertNull(index.get(new File(folder.getRoot(), "Qa.raw")));
+    }
+
+    @Test
+    public void indexInUseCanBeWrittenAgain() throws IOException {
+        ArchiveIndex previous = ArchiveIndex.open(indexFile, archiveDirectory);
+        Files.write(new File(monthDirectory, "inst/Qz.raw").toPath(), new byte[20]);
+        // the file of the previous index is replaced while that index is still referenced
+        ArchiveIndex index = ArchiveIndex.open(indexFile, archiveDirectory);
+        assertEquals(20, index.get(new File(monthDirectory, "inst/Qz.raw")).getSize());
+        // the previous index keeps its own content
+        assertEquals(10, previous.get(new File(monthDirectory, "inst/Qa.raw")).getSize());
+        assertNull(previous.get(new File(monthDirectory, "inst/Qz.raw")));
+    }
+}
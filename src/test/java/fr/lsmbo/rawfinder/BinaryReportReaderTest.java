@@ -0,0 +1,109 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryReportReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File rawDataDirectory;
+    private File archiveDirectory;
+
+    /**
+     * Keeps what the reader sends
+     */
+    private static class CollectingWriter implements ReportWriter {
+        final List<Object[]> files = new ArrayList<>();
+        final List<RawData> rawData = new ArrayList<>();
+
+        @Override
+        public void writeFile(FileInfo file, FileInfo archive, String rawFileName, Boolean checksumMatch) {
+            files.add(new Object[] { file, archive, rawFileName, checksumMatch });
+        }
+
+        @Override
+        public void writeRawData(RawData item) {
+            rawData.add(item);
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        rawDataDirectory = folder.newFolder("raw");
+        archiveDirectory = folder.newFolder("archives");
+        Global.RAW_DATA_DIRECTORY = rawDataDirectory;
+        Global.RAW_DATA_ARCHIVES = archiveDirectory;
+    }
+
+    @Test
+    public void readsWhatHasBeenWritten() throws IOException {
+        FileInfo file1 = new FileInfo(new File(rawDataDirectory, "inst1/TP1.d/data.bin"), false, 1000, 1600000000000L, 1600000001000L);
+        FileInfo archive1 = new FileInfo(new File(archiveDirectory, "2020/septembre/inst1/TP1.d/data.bin"), false, 1000, 1600000002000L, 1600000003000L);
+        // a file outside of the data directory keeps its absolute path
+        FileInfo file2 = new FileInfo(new File(folder.getRoot(), "elsewhere/TP2.d/data.bin"), false, 20, 1600000004000L, 1600000005000L);
+        RawData rawData1 = new RawData("TP1.d", 1000.0, new Date(1600000000000L), 1, 1, 0);
+        RawData rawData2 = new RawData("TP2.d", 20.0, null, 0, 1, 0);
+        File reportFile = new File(folder.getRoot(), "report.rfb");
+        try (BinaryReportWriter writer = new BinaryReportWriter(reportFile)) {
+            writer.writeFile(file1, archive1, "TP1.d", true);
+            writer.writeFile(file2, null, "TP2.d", null);
+            writer.writeRawData(rawData1);
+            writer.writeRawData(rawData2);
+        }
+
+        CollectingWriter target = new CollectingWriter();
+        BinaryReportReader.read(reportFile, target);
+
+        assertEquals(2, target.files.size());
+        assertSameFile(file1, (FileInfo) target.files.get(0)[0]);
+        assertSameFile(archive1, (FileInfo) target.files.get(0)[1]);
+        assertEquals("TP1.d", target.files.get(0)[2]);
+        assertEquals(Boolean.TRUE, target.files.get(0)[3]);
+        assertSameFile(file2, (FileInfo) target.files.get(1)[0]);
+        assertNull(target.files.get(1)[1]);
+        assertEquals("TP2.d", target.files.get(1)[2]);
+        assertNull(target.files.get(1)[3]);
+
+        assertEquals(2, target.rawData.size());
+        assertSameRawData(rawData1, target.rawData.get(0));
+        assertSameRawData(rawData2, target.rawData.get(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        File otherFile = folder.newFile("report.csv");
+        BinaryReportReader.read(otherFile, new CollectingWriter());
+    }
+
+    private static void assertSameFile(FileInfo expected, FileInfo actual) {
+        assertEquals(expected.getFile().getAbsolutePath(), actual.getFile().getAbsolutePath());
+        assertEquals(expected.getSize(), actual.getSize());
+        assertEquals(expected.getCreationTime(), actual.getCreationTime());
+        assertEquals(expected.getLastModifiedTime(), actual.getLastModifiedTime());
+    }
+
+    private static void assertSameRawData(RawData expected, RawData actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSize(), actual.getSize());
+        assertEquals(expected.getDate(), actual.getDate());
+        assertEquals(expected.getNbFilesArchived(), actual.getNbFilesArchived());
+        assertEquals(expected.getNbFilesTotal(), actual.getNbFilesTotal());
+        assertEquals(expected.getNbFilesCorrupted(), actual.getNbFilesCorrupted());
+        assertEquals(expected.getStatus(), actual.getStatus());
+    }
+}
@@ -0,0 +1,226 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CancellationTest {
+
+    // time given to the scan or the export to stop once cancelled
+    private static final long MAX_STOP_TIME = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File rawDataDirectory;
+    private File archiveDirectory;
+
+    /**
+     * Results interrupting the export after a given number of rows
+     */
+    private static class InterruptingResultStore extends ResultStore {
+        final int nbRowsBeforeInterruption;
+        final AtomicInteger nbRowsRead = new AtomicInteger();
+        volatile long interruptionTime = 0;
+
+        InterruptingResultStore(int _nbRowsBeforeInterruption) {
+            super(Global.RAW_DATA_DIRECTORY, Global.RAW_DATA_ARCHIVES);
+            nbRowsBeforeInterruption = _nbRowsBeforeInterruption;
+        }
+
+        @Override
+        public String getPath(int row) {
+            // only read once per written row
+            if(nbRowsRead.incrementAndGet() == nbRowsBeforeInterruption) {
+                interruptionTime = System.currentTimeMillis();
+                Thread.currentThread().interrupt();
+            }
+            return super.getPath(row);
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        rawDataDirectory = folder.newFolder("raw");
+        archiveDirectory = folder.newFolder("archives");
+        Global.RAW_DATA_DIRECTORY = rawDataDirectory;
+        Global.RAW_DATA_ARCHIVES = archiveDirectory;
+        Global.REPORTS_DIRECTORY = folder.newFolder("reports");
+        Global.IS_FOLDER_LIKE = false;
+        Global.FOLDER_LIKE_RAW_DATA_TEMPLATE = Collections.singletonList("TP.*\\.d");
+        Global.FILE_LIKE_RAW_DATA_TEMPLATE = Collections.singletonList("Q.*\\.raw");
+        Global.NB_THREADS = 4;
+        Global.NB_PROBE_THREADS = 2;
+        Global.NB_VERIFY_THREADS = 1;
+        Global.PIPELINE_QUEUE_SIZE = 2;
+        Global.ARCHIVE_CACHE_SIZE = 100;
+        Global.USE_ARCHIVE_INDEX = false;
+        Global.INCREMENTAL_SCAN = false;
+        Global.VERIFY_CHECKSUMS = false;
+        Global.USE_NATIVE_LISTING = false;
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>();
+        Global.MAX_DEPTH = 0;
+        Global.MAX_ROWS_PER_REPORT = 1000000;
+        Global.DATE_WINDOW_TYPE = "";
+        Global.DATE_WINDOW_START = "";
+        Global.DATE_WINDOW_END = "";
+    }
+
+    @After
+    public void tearDown() {
+        // an interruption left by a failed test would break the following ones
+        Thread.interrupted();
+    }
+
+    @Test
+    public void scanStopsDuringListing() throws Throwable {
+        createRawFiles(100, 5, 10, false);
+        // the raw data directory as seen through a slow network share
+        MemoryStorage storage = MemoryStorage.copyOf(rawDataDirectory, archiveDirectory);
+        storage.setLatency(0, 5, TimeUnit.MILLISECONDS);
+        DataParser parser = new DataParser(rawDataDirectory, storage);
+        AtomicLong cancelTime = new AtomicLong();
+        // the 100 directories are listed first, then their files
+        storage.setOnAttributeRead(() -> {
+            if(storage.getNbAttributeReads() >= 200 && cancelTime.compareAndSet(0, System.currentTimeMillis())) parser.cancel();
+        });
+        parser.start();
+
+        assertTrue("the scan has not been cancelled", cancelTime.get() > 0);
+        assertTrue("the scan took too long to stop", System.currentTimeMillis() - cancelTime.get() < MAX_STOP_TIME);
+        assertFalse(parser.isComplete());
+        assertNoWorkerLeft();
+        // the files searched before the cancellation are kept
+        ResultStore results = parser.getResults();
+        assertTrue(results.size() > 0);
+        assertTrue(results.size() < 500);
+        assertFalse(parser.getAsRawData().isEmpty());
+        for(int row = 0; row < results.size(); row++) assertTrue(results.getFile(row).exists());
+        // and can still be exported
+        File report = new File(Global.REPORTS_DIRECTORY, "report.xlsx");
+        new Export(parser).start(report);
+        assertTrue(report.exists());
+    }
+
+    @Test
+    public void scanStopsDuringVerification() throws Exception {
+        createRawFiles(1, 30, 2 * 1024 * 1024, true);
+        Global.VERIFY_CHECKSUMS = true;
+        DataParser parser = new DataParser(rawDataDirectory);
+        AtomicLong cancelTime = new AtomicLong();
+        AtomicInteger nbFilesVerified = new AtomicInteger();
+        parser.setScanListener((file, archive, rawFileName, checksumMatch) -> {
+            if(checksumMatch != null) nbFilesVerified.incrementAndGet();
+            // cancelled as soon as the first file has been verified
+            if(checksumMatch != null && cancelTime.compareAndSet(0, System.currentTimeMillis())) parser.cancel();
+        });
+        parser.start();
+
+        assertTrue("no file has been verified", cancelTime.get() > 0);
+        assertTrue("the scan took too long to stop", System.currentTimeMillis() - cancelTime.get() < MAX_STOP_TIME);
+        assertFalse(parser.isComplete());
+        assertNoWorkerLeft();
+        // the verified files are kept, the others have been dropped
+        ResultStore results = parser.getResults();
+        int nbRowsVerified = 0;
+        for(int row = 0; row < results.size(); row++) {
+            if(results.getChecksumMatch(row) == null) continue;
+            assertEquals(Boolean.TRUE, results.getChecksumMatch(row));
+            nbRowsVerified++;
+        }
+        assertTrue(nbRowsVerified > 0);
+        assertTrue(nbRowsVerified < 30);
+        // a file verified while the scan was cancelled is kept without being sent to the listener
+        assertTrue(nbRowsVerified >= nbFilesVerified.get());
+    }
+
+    @Test
+    public void exportStopsBetweenRows() throws Throwable {
+        InterruptingResultStore results = new InterruptingResultStore(100);
+        File archiveMonthDirectory = new File(archiveDirectory, "2020/septembre");
+        for(int i = 0; i < 1000; i++) {
+            RawData rawData = new RawData("Q" + i + ".raw", 1000.0, new Date(1600000000000L), 1, 1, 0);
+            FileInfo file = new FileInfo(new File(rawDataDirectory, "inst/Q" + i + ".raw"), false, 1000, 1600000000000L, 1600000001000L);
+            FileInfo archive = new FileInfo(new File(archiveMonthDirectory, "inst/Q" + i + ".raw"), false, 1000, 1600000002000L, 1600000003000L);
+            results.add(file, archive, rawData);
+        }
+        results.complete();
+        DataParser parser = new DataParser(rawDataDirectory) {
+            @Override
+            public ResultStore getResults() {
+                return results;
+            }
+        };
+        File report = new File(Global.REPORTS_DIRECTORY, "report.xlsx");
+        try {
+            new Export(parser).start(report);
+            fail("the export has not been cancelled");
+        } catch (CancellationException ce) {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertTrue("the export took too long to stop", System.currentTimeMillis() - results.interruptionTime < MAX_STOP_TIME);
+        assertTrue(results.nbRowsRead.get() < 1000);
+        assertFalse(report.exists());
+        assertNoWorkerLeft();
+        // the results of the scan are left as they were
+        assertEquals(1000, results.size());
+        assertEquals(new File(rawDataDirectory, "inst/Q0.raw").getAbsoluteFile(), results.getFile(0));
+    }
+
+    /**
+     * Creates file-like raw data, each with an identical archive in the current month if requested
+     */
+    private void createRawFiles(int nbDirectories, int nbFilesPerDirectory, int fileSize, boolean isArchived) throws IOException {
+        LocalDate today = LocalDate.now();
+        File archiveMonthDirectory = new File(archiveDirectory, today.getYear() + "/" + Global.MONTH_NAMES[today.getMonthValue() - 1]);
+        byte[] content = new byte[fileSize];
+        Arrays.fill(content, (byte) 42);
+        for(int d = 0; d < nbDirectories; d++) {
+            for(int f = 0; f < nbFilesPerDirectory; f++) {
+                String path = "inst" + d + "/Q" + f + ".raw";
+                write(new File(rawDataDirectory, path), content);
+                if(isArchived) write(new File(archiveMonthDirectory, path), content);
+            }
+        }
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+    }
+
+    /**
+     * Checks that the scan and export threads have stopped, the fork/join workers stop shortly after their pool
+     */
+    private static void assertNoWorkerLeft() throws InterruptedException {
+        List<String> workers = new ArrayList<>();
+        long end = System.currentTimeMillis() + MAX_STOP_TIME;
+        do {
+            workers.clear();
+            for(Thread thread : Thread.getAllStackTraces().keySet()) {
+                if(thread.isAlive() && (thread.getName().startsWith("RawFinder-") || thread.getName().matches("ForkJoinPool-\\d+-worker-\\d+"))) workers.add(thread.getName());
+            }
+            if(!workers.isEmpty()) Thread.sleep(50);
+        } while(!workers.isEmpty() && System.currentTimeMillis() < end);
+        assertTrue("threads still running: " + workers, workers.isEmpty());
+    }
+}
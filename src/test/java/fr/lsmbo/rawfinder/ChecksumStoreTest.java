@@ -0,0 +1,135 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class ChecksumStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File storeFile;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        storeFile = new File(folder.getRoot(), "checksums.log");
+        directory = folder.newFolder("raw");
+    }
+
+    @Test
+    public void checksumsAreKeptBetweenRuns() throws IOException {
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            assertNull(store.get(file("Q1.raw", 10, 1000)));
+            store.put(file("Q1.raw", 10, 1000), 42);
+            store.put(file("Q2.raw", 20, 2000), 43);
+            assertEquals(Long.valueOf(42), store.get(file("Q1.raw", 10, 1000)));
+        }
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            assertEquals(Long.valueOf(42), store.get(file("Q1.raw", 10, 1000)));
+            assertEquals(Long.valueOf(43), store.get(file("Q2.raw", 20, 2000)));
+        }
+    }
+
+    @Test
+    public void checksumIsForgottenWhenTheFileChanges() throws IOException {
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            store.put(file("Q1.raw", 10, 1000), 42);
+            assertNull(store.get(file("Q1.raw", 11, 1000)));
+            assertNull(store.get(file("Q1.raw", 10, 1001)));
+            // a new checksum replaces the previous one
+            store.put(file("Q1.raw", 11, 1001), 44);
+            assertNull(store.get(file("Q1.raw", 10, 1000)));
+        }
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            assertNull(store.get(file("Q1.raw", 10, 1000)));
+            assertEquals(Long.valueOf(44), store.get(file("Q1.raw", 11, 1001)));
+        }
+    }
+
+    @Test
+    public void truncatedLastRecordIsRemoved() throws IOException {
+        writeTwoRecords();
+        long length = storeFile.length();
+        try (FileChannel channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length - 5);
+        }
+        checkOnlyTheFirstRecordIsKept(length);
+    }
+
+    @Test
+    public void corruptedLastRecordIsRemoved() throws IOException {
+        writeTwoRecords();
+        long length = storeFile.length();
+        // the last byte of the checksum of the last record
+        try (RandomAccessFile file = new RandomAccessFile(storeFile, "rw")) {
+            file.seek(length - 5);
+            file.write(file.read() ^ 0xFF);
+        }
+        checkOnlyTheFirstRecordIsKept(length);
+    }
+
+    @Test
+    public void unknownFormatIsCreatedAgain() throws IOException {
+        Files.write(storeFile.toPath(), "not a checksum store".getBytes());
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            assertNull(store.get(file("Q1.raw", 10, 1000)));
+            store.put(file("Q1.raw", 10, 1000), 42);
+        }
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            assertEquals(Long.valueOf(42), store.get(file("Q1.raw", 10, 1000)));
+        }
+    }
+
+    @Test
+    public void compactedStoreKeepsTheLatestChecksums() throws IOException {
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            for(int i = 0; i < 10; i++) store.put(file("Q1.raw", 10, 1000 + i), i);
+            store.put(file("Q2.raw", 20, 2000), 43);
+        }
+        long length = storeFile.length();
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            assertTrue(storeFile.length() < length);
+            assertEquals(Long.valueOf(9), store.get(file("Q1.raw", 10, 1009)));
+            assertEquals(Long.valueOf(43), store.get(file("Q2.raw", 20, 2000)));
+        }
+    }
+
+    private void writeTwoRecords() throws IOException {
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            store.put(file("Q1.raw", 10, 1000), 42);
+            store.put(file("Q2.raw", 20, 2000), 43);
+        }
+    }
+
+    /**
+     * The first record is still read, the last one is removed from the file, and the store can be written again
+     */
+    private void checkOnlyTheFirstRecordIsKept(long initialLength) throws IOException {
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            assertEquals(Long.valueOf(42), store.get(file("Q1.raw", 10, 1000)));
+            assertNull(store.get(file("Q2.raw", 20, 2000)));
+            assertTrue(storeFile.length() < initialLength);
+            store.put(file("Q3.raw", 30, 3000), 45);
+        }
+        try (ChecksumStore store = ChecksumStore.open(storeFile)) {
+            assertEquals(Long.valueOf(42), store.get(file("Q1.raw", 10, 1000)));
+            assertEquals(Long.valueOf(45), store.get(file("Q3.raw", 30, 3000)));
+        }
+    }
+
+    private FileInfo file(String name, long size, long lastModified) {
+        return new FileInfo(new File(directory, name), false, size, lastModified, lastModified);
+    }
+}
@@ -0,0 +1,101 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ChecksumVerifierTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File rawDataDirectory;
+    private File archiveDirectory;
+    private File archiveMonthDirectory;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        rawDataDirectory = folder.newFolder("raw");
+        archiveDirectory = folder.newFolder("archives");
+        TestSettings.apply(rawDataDirectory, archiveDirectory, folder.newFolder("reports"));
+        LocalDate today = LocalDate.now();
+        archiveMonthDirectory = new File(archiveDirectory, today.getYear() + "/" + Global.MONTH_NAMES[today.getMonthValue() - 1]);
+        content = new byte[100000];
+        for(int i = 0; i < content.length; i++) content[i] = (byte) i;
+    }
+
+    @Test
+    public void changedByteIsFound() throws IOException {
+        File file = write(new File(rawDataDirectory, "Q1.raw"), content);
+        File archive = write(new File(archiveMonthDirectory, "Q1.raw"), content);
+        ChecksumVerifier verifier = new ChecksumVerifier(null);
+        assertTrue(verifier.verify(FileInfo.read(file), FileInfo.read(archive)));
+        changeByte(archive, content.length / 2);
+        assertFalse(verifier.verify(FileInfo.read(file), FileInfo.read(archive)));
+    }
+
+    @Test
+    public void missingArchiveDoesNotMatch() throws IOException {
+        File file = write(new File(rawDataDirectory, "Q1.raw"), content);
+        FileInfo archive = new FileInfo(new File(archiveMonthDirectory, "Q1.raw"), false, content.length, 0, 0);
+        assertFalse(new ChecksumVerifier(null).verify(FileInfo.read(file), archive));
+    }
+
+    @Test
+    public void storedChecksumIsNotReusedOnceTheArchiveHasChanged() throws IOException {
+        File file = write(new File(rawDataDirectory, "Q1.raw"), content);
+        File archive = write(new File(archiveMonthDirectory, "Q1.raw"), content);
+        try (ChecksumStore store = ChecksumStore.open(new File(folder.getRoot(), "checksums.log"))) {
+            ChecksumVerifier verifier = new ChecksumVerifier(store);
+            assertTrue(verifier.verify(FileInfo.read(file), FileInfo.read(archive)));
+            assertNotNull(store.get(FileInfo.read(archive)));
+            // same size, another modification date
+            FileTime lastModified = Files.getLastModifiedTime(archive.toPath());
+            changeByte(archive, 0);
+            Files.setLastModifiedTime(archive.toPath(), FileTime.fromMillis(lastModified.toMillis() + 2000));
+            assertFalse(verifier.verify(FileInfo.read(file), FileInfo.read(archive)));
+        }
+    }
+
+    @Test
+    public void changedArchiveMarksTheRawDataAsCorrupted() throws IOException, InterruptedException {
+        for(String name : Arrays.asList("Q1.raw", "Q2.raw")) {
+            write(new File(rawDataDirectory, "inst/" + name), content);
+            write(new File(archiveMonthDirectory, "inst/" + name), content);
+        }
+        changeByte(new File(archiveMonthDirectory, "inst/Q2.raw"), content.length - 1);
+        Global.VERIFY_CHECKSUMS = true;
+        DataParser parser = new DataParser(rawDataDirectory);
+        parser.start();
+
+        assertEquals(Status.CORRUPTED, parser.getAsRawData().get("Q2.raw").getStatusValue());
+        assertNotEquals(Status.CORRUPTED, parser.getAsRawData().get("Q1.raw").getStatusValue());
+        ResultStore results = parser.getResults();
+        for(int row = 0; row < results.size(); row++) {
+            assertEquals(results.getFile(row).getName(), !results.getFile(row).getName().equals("Q2.raw"), results.getChecksumMatch(row));
+        }
+    }
+
+    private static File write(File file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static void changeByte(File file, int position) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[position] ^= 0x01;
+        Files.write(file.toPath(), bytes);
+    }
+}
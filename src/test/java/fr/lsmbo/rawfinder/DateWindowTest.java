@@ -0,0 +1,136 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.Assert.*;
+
+public class DateWindowTest {
+
+    @Test
+    public void noTypeMeansNoWindow() {
+        assertNull(DateWindow.parse("", "2020-01-01", "2020-12-31"));
+        assertNull(DateWindow.parse(null, "", ""));
+    }
+
+    @Test
+    public void typeIsNotCaseSensitive() {
+        assertEquals(DateWindow.Type.CREATION, DateWindow.parse("Creation", "2020-01-01", "").getType());
+        assertEquals(DateWindow.Type.MODIFICATION, DateWindow.parse("MODIFICATION", "", "2020-01-01").getType());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownTypeIsRejected() {
+        DateWindow.parse("access", "2020-01-01", "");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badlyFormattedDayIsRejected() {
+        DateWindow.parse("creation", "01/09/2020", "");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowEndingBeforeItStartsIsRejected() {
+        DateWindow.parse("creation", "2020-09-02", "2020-09-01");
+    }
+
+    @Test
+    public void singleDayWindow() {
+        DateWindow window = DateWindow.parse("creation", "2020-09-01", "2020-09-01");
+        assertTrue(window.contains(createdAt(2020, 9, 1, 0, 0)));
+        assertTrue(window.contains(createdAt(2020, 9, 1, 23, 59)));
+        assertFalse(window.contains(createdAt(2020, 9, 2, 0, 0)));
+    }
+
+    @Test
+    public void firstAndLastDaysAreIncluded() {
+        DateWindow window = DateWindow.parse("creation", "2020-09-01", "2020-09-30");
+        assertFalse(window.contains(createdAt(time(2020, 9, 1, 0, 0) - 1)));
+        assertTrue(window.contains(createdAt(2020, 9, 1, 0, 0)));
+        assertTrue(window.contains(createdAt(time(2020, 10, 1, 0, 0) - 1)));
+        assertFalse(window.contains(createdAt(2020, 10, 1, 0, 0)));
+    }
+
+    @Test
+    public void openWindows() {
+        DateWindow since = DateWindow.parse("creation", "2020-09-01", "");
+        assertFalse(since.contains(createdAt(2020, 8, 31, 23, 59)));
+        assertTrue(since.contains(createdAt(2100, 1, 1, 0, 0)));
+        DateWindow until = DateWindow.parse("creation", "", "2020-09-01");
+        assertTrue(until.contains(createdAt(0)));
+        assertTrue(until.contains(createdAt(2020, 9, 1, 23, 59)));
+        assertFalse(until.contains(createdAt(2020, 9, 2, 0, 0)));
+        DateWindow always = DateWindow.parse("creation", "", "");
+        assertTrue(always.contains(createdAt(0)));
+        assertTrue(always.contains(createdAt(2100, 1, 1, 0, 0)));
+    }
+
+    @Test
+    public void typeChoosesTheDate() {
+        FileInfo file = new FileInfo(new File("Q1.raw"), false, 10, time(2019, 12, 31, 12, 0), time(2020, 1, 2, 12, 0));
+        assertFalse(DateWindow.parse("creation", "2020-01-01", "2020-01-31").contains(file));
+        assertTrue(DateWindow.parse("modification", "2020-01-01", "2020-01-31").contains(file));
+    }
+
+    @Test
+    public void directoryNotModifiedSinceTheStartCanBeSkipped() {
+        DateWindow window = DateWindow.parse("creation", "2020-09-01", "2020-09-30");
+        assertFalse(window.mayContain(modifiedAt(2020, 8, 31, 23, 59)));
+        assertTrue(window.mayContain(modifiedAt(2020, 9, 1, 0, 0)));
+        // modified after the window, its files may still be in the window
+        assertTrue(window.mayContain(modifiedAt(2021, 1, 1, 0, 0)));
+        assertTrue(DateWindow.parse("creation", "", "2020-09-30").mayContain(modifiedAt(1970, 1, 2, 0, 0)));
+    }
+
+    @Test
+    public void archiveMonthsAreTheMonthsOfTheWindowAndTheNextOne() {
+        // the archive of a file of December may be in January of the next year
+        DateWindow window = DateWindow.parse("creation", "2020-12-01", "2020-12-31");
+        assertFalse(window.isArchiveMonth(month(2020, 11)));
+        assertTrue(window.isArchiveMonth(month(2020, 12)));
+        assertTrue(window.isArchiveMonth(month(2021, 1)));
+        assertFalse(window.isArchiveMonth(month(2021, 2)));
+        // a window ending on the last day of a month does not reach two months later
+        window = DateWindow.parse("creation", "2020-11-15", "2020-11-30");
+        assertTrue(window.isArchiveMonth(month(2020, 12)));
+        assertFalse(window.isArchiveMonth(month(2021, 1)));
+    }
+
+    @Test
+    public void openWindowsKeepAllTheArchiveMonthsOnTheirOpenSide() {
+        DateWindow since = DateWindow.parse("creation", "2020-12-01", "");
+        assertFalse(since.isArchiveMonth(month(2020, 11)));
+        assertTrue(since.isArchiveMonth(month(2100, 1)));
+        DateWindow until = DateWindow.parse("creation", "", "2020-12-31");
+        assertTrue(until.isArchiveMonth(month(1990, 1)));
+        assertTrue(until.isArchiveMonth(month(2021, 1)));
+        assertFalse(until.isArchiveMonth(month(2021, 2)));
+    }
+
+    /**
+     * @return the month as encoded by the data parser, the month being from 1 to 12
+     */
+    private static int month(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static FileInfo createdAt(int year, int month, int day, int hour, int minute) {
+        return createdAt(time(year, month, day, hour, minute));
+    }
+
+    private static FileInfo createdAt(long time) {
+        return new FileInfo(new File("Q1.raw"), false, 10, time, time);
+    }
+
+    private static FileInfo modifiedAt(int year, int month, int day, int hour, int minute) {
+        long time = time(year, month, day, hour, minute);
+        return new FileInfo(new File("TP1.d"), true, 0, time, time);
+    }
+}
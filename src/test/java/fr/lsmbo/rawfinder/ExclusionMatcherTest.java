@@ -0,0 +1,84 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ExclusionMatcherTest {
+
+    @After
+    public void tearDown() {
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>();
+    }
+
+    @Test
+    public void globWithoutSeparatorMatchesTheNameAtAnyDepth() {
+        ExclusionMatcher matcher = new ExclusionMatcher(Collections.singletonList("Method*"));
+        assertTrue(matcher.matches(path("Methods")));
+        assertTrue(matcher.matches(path("inst1/Methods")));
+        assertTrue(matcher.matches(path("inst1/project/Methods_old")));
+        assertFalse(matcher.matches(path("inst1/OldMethods")));
+        // only the name of the directory is matched, not the names of its parents
+        assertFalse(matcher.matches(path("Methods/project")));
+    }
+
+    @Test
+    public void globWithSeparatorMatchesThePath() {
+        ExclusionMatcher matcher = new ExclusionMatcher(Collections.singletonList("glob:inst1/Methods"));
+        assertTrue(matcher.matches(path("inst1/Methods")));
+        assertFalse(matcher.matches(path("inst2/Methods")));
+        assertFalse(matcher.matches(path("Methods")));
+        assertFalse(matcher.matches(path("other/inst1/Methods")));
+    }
+
+    @Test
+    public void regexMatchesTheWholePath() {
+        ExclusionMatcher matcher = new ExclusionMatcher(Collections.singletonList("regex:(.+/)?tmp_[0-9]+"));
+        assertTrue(matcher.matches(path("tmp_1")));
+        assertTrue(matcher.matches(path("inst1/project/tmp_12")));
+        assertFalse(matcher.matches(path("inst1/tmp_x")));
+        assertFalse(matcher.matches(path("inst1/tmp_12/project")));
+        // a regular expression is not matched against a part of the path
+        assertFalse(new ExclusionMatcher(Collections.singletonList("regex:tmp")).matches(path("inst1/tmp_12")));
+    }
+
+    @Test
+    public void globAndRegexAreCombined() {
+        ExclusionMatcher matcher = new ExclusionMatcher(Arrays.asList("Methods", "regex:.*\\.bak", "glob:inst2/*"));
+        assertTrue(matcher.matches(path("inst1/Methods")));
+        assertTrue(matcher.matches(path("inst1/project.bak")));
+        assertTrue(matcher.matches(path("inst2/project")));
+        assertFalse(matcher.matches(path("inst1/project")));
+        // the '*' of a glob does not go through the separators
+        assertFalse(matcher.matches(path("inst2/project/data")));
+    }
+
+    @Test
+    public void scannedDirectoryIsNeverMatched() {
+        ExclusionMatcher matcher = new ExclusionMatcher(Arrays.asList("*", "regex:.*"));
+        assertFalse(matcher.matches(path("")));
+    }
+
+    @Test
+    public void globalExclusionsFollowTheSettings() {
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>();
+        assertFalse(Global.isExcluded(path("Methods")));
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>(Collections.singletonList("Methods"));
+        assertTrue(Global.isExcluded(path("inst1/Methods")));
+        // new settings replace the previous patterns
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>(Collections.singletonList("regex:tmp_[0-9]+"));
+        assertFalse(Global.isExcluded(path("inst1/Methods")));
+        assertTrue(Global.isExcluded(path("tmp_1")));
+    }
+
+    private static Path path(String relativePath) {
+        return Paths.get(relativePath);
+    }
+}
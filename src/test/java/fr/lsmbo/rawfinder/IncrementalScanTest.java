@@ -0,0 +1,76 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class IncrementalScanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File rawDataDirectory;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        rawDataDirectory = folder.newFolder("raw");
+        TestSettings.apply(rawDataDirectory, folder.newFolder("archives"), folder.newFolder("reports"));
+        Global.INCREMENTAL_SCAN = true;
+        directory = new File(rawDataDirectory, "inst");
+        Files.createDirectories(directory.toPath());
+        Files.write(new File(directory, "Qa.raw").toPath(), new byte[10]);
+    }
+
+    @Test
+    public void unchangedDirectoryIsNotListedAgain() throws IOException, InterruptedException {
+        assertEquals(Arrays.asList("Qa.raw"), scan());
+        // a file added without changing the date of its directory is not seen
+        FileTime lastModified = Files.getLastModifiedTime(directory.toPath());
+        Files.write(new File(directory, "Qz.raw").toPath(), new byte[20]);
+        Files.setLastModifiedTime(directory.toPath(), lastModified);
+        assertEquals(Arrays.asList("Qa.raw"), scan());
+    }
+
+    @Test
+    public void directoryReadPartwayIsListedAgain() throws IOException, InterruptedException {
+        File item = new File(directory, "Qm.raw");
+        try {
+            // the attributes of a link to itself can not be read
+            Files.createSymbolicLink(item.toPath(), item.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue("symbolic links can not be created here", false);
+        }
+        assertEquals(Arrays.asList("Qa.raw"), scan());
+        // the item becomes readable, the date of the directory does not change
+        FileTime lastModified = Files.getLastModifiedTime(directory.toPath());
+        Files.delete(item.toPath());
+        Files.write(item.toPath(), new byte[20]);
+        Files.setLastModifiedTime(directory.toPath(), lastModified);
+        assertEquals(Arrays.asList("Qa.raw", "Qm.raw"), scan());
+    }
+
+    /**
+     * @return the names of the raw files found, sorted
+     */
+    private List<String> scan() throws InterruptedException {
+        DataParser parser = new DataParser(rawDataDirectory);
+        parser.start();
+        List<String> names = new ArrayList<>();
+        ResultStore results = parser.getResults();
+        for(int row : results.getSortedRows()) names.add(results.getFile(row).getName());
+        return names;
+    }
+}
@@ -0,0 +1,178 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Storage kept in memory, with a configurable latency for each call and counters of the calls,
+ * to observe the scan as if the directories were on a slow network share (used by the tests and the benchmarks).
+ *
+ * Opening a directory listing costs one listing latency, each item of the listing and each read of attributes
+ * cost one attribute latency, as with SMB where the attributes come with the listing but are still paid per item.
+ */
+public class MemoryStorage implements Storage {
+
+    private final Map<File, FileInfo> items = new ConcurrentHashMap<>();
+    private final Map<File, List<File>> children = new ConcurrentHashMap<>();
+    private long listingLatency = 0; // in nanoseconds
+    private long attributeLatency = 0; // in nanoseconds
+    private final LongAdder nbListings = new LongAdder();
+    private final LongAdder nbAttributeReads = new LongAdder();
+    // calls per directory or per item
+    private final Map<File, LongAdder> listings = new ConcurrentHashMap<>();
+    private final Map<File, LongAdder> attributeReads = new ConcurrentHashMap<>();
+    private volatile Runnable onAttributeRead = () -> {};
+
+    public void setLatency(long _listingLatency, long _attributeLatency, TimeUnit unit) {
+        listingLatency = unit.toNanos(_listingLatency);
+        attributeLatency = unit.toNanos(_attributeLatency);
+    }
+
+    /**
+     * @param _onAttributeRead called after each read of attributes, from the thread that reads them
+     */
+    public void setOnAttributeRead(Runnable _onAttributeRead) {
+        onAttributeRead = _onAttributeRead;
+    }
+
+    /**
+     * Adds a file or a directory, and its missing parent directories
+     */
+    public void add(FileInfo item) {
+        File file = item.getFile().getAbsoluteFile();
+        FileInfo previous = items.put(file, item);
+        File parent = file.getParentFile();
+        if(previous == null && parent != null) {
+            if(!items.containsKey(parent)) add(new FileInfo(parent, true, 0, item.getCreationTime(), item.getLastModifiedTime()));
+            children.computeIfAbsent(parent, key -> Collections.synchronizedList(new ArrayList<>())).add(file);
+        }
+    }
+
+    /**
+     * Copies the attributes of all the items of a local directory, the content of the files is not copied
+     */
+    public static MemoryStorage copyOf(File... directories) throws IOException {
+        MemoryStorage storage = new MemoryStorage();
+        for(File directory : directories) {
+            Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) {
+                    storage.add(FileInfo.of(path.toAbsolutePath(), attributes));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                    storage.add(FileInfo.of(path.toAbsolutePath(), attributes));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return storage;
+    }
+
+    @Override
+    public DirectoryStream<FileInfo> list(File directory) throws IOException {
+        File key = directory.getAbsoluteFile();
+        nbListings.increment();
+        listings.computeIfAbsent(key, k -> new LongAdder()).increment();
+        simulateLatency(listingLatency);
+        FileInfo item = items.get(key);
+        if(item == null) throw new NoSuchFileException(directory.getPath());
+        if(!item.isDirectory()) throw new NotDirectoryException(directory.getPath());
+        List<File> content = new ArrayList<>();
+        List<File> directoryContent = children.get(key);
+        if(directoryContent != null) {
+            synchronized (directoryContent) {
+                content.addAll(directoryContent);
+            }
+        }
+        return new DirectoryStream<FileInfo>() {
+            @Override
+            public Iterator<FileInfo> iterator() {
+                Iterator<File> files = content.iterator();
+                return new Iterator<FileInfo>() {
+                    @Override
+                    public boolean hasNext() {
+                        return files.hasNext();
+                    }
+
+                    @Override
+                    public FileInfo next() {
+                        return readAttributes(files.next());
+                    }
+                };
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public FileInfo read(File file) {
+        return readAttributes(file.getAbsoluteFile());
+    }
+
+    private FileInfo readAttributes(File file) {
+        nbAttributeReads.increment();
+        attributeReads.computeIfAbsent(file, k -> new LongAdder()).increment();
+        simulateLatency(attributeLatency);
+        FileInfo item = items.get(file);
+        onAttributeRead.run();
+        return item;
+    }
+
+    private void simulateLatency(long nanoseconds) {
+        if(nanoseconds <= 0) return;
+        long end = System.nanoTime() + nanoseconds;
+        // the thread is blocked like it would be on a network call
+        for(long remaining = nanoseconds; remaining > 0; remaining = end - System.nanoTime()) LockSupport.parkNanos(remaining);
+    }
+
+    public long getNbListings() {
+        return nbListings.sum();
+    }
+
+    public long getNbAttributeReads() {
+        return nbAttributeReads.sum();
+    }
+
+    /**
+     * @return the number of listings of the given directory
+     */
+    public long getNbListings(File directory) {
+        LongAdder counter = listings.get(directory.getAbsoluteFile());
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @return the number of reads of the attributes of the given item, by a listing or on their own
+     */
+    public long getNbAttributeReads(File item) {
+        LongAdder counter = attributeReads.get(item.getAbsoluteFile());
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @return the files and directories stored, in no particular order
+     */
+    public Set<File> getItems() {
+        return items.keySet();
+    }
+
+    public void resetCounters() {
+        nbListings.reset();
+        nbAttributeReads.reset();
+        listings.clear();
+        attributeReads.clear();
+    }
+}
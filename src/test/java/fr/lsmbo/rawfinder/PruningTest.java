@@ -0,0 +1,140 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PruningTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File rawDataDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        rawDataDirectory = folder.newFolder("raw");
+        TestSettings.apply(rawDataDirectory, folder.newFolder("archives"), folder.newFolder("reports"));
+    }
+
+    @Test
+    public void directoriesBeyondTheMaximumDepthAreNotRead() throws IOException, InterruptedException {
+        write("Q0.raw", "inst/Q1.raw", "inst/project/Q2.raw", "inst/project/sub/Q3.raw");
+        Global.MAX_DEPTH = 2;
+        assertEquals(Arrays.asList("Q0.raw", "inst/Q1.raw", "inst/project/Q2.raw"), scan());
+        Global.MAX_DEPTH = 1;
+        assertEquals(Arrays.asList("Q0.raw", "inst/Q1.raw"), scan());
+        Global.MAX_DEPTH = 0;
+        assertEquals(Arrays.asList("Q0.raw", "inst/Q1.raw", "inst/project/Q2.raw", "inst/project/sub/Q3.raw"), scan());
+    }
+
+    @Test
+    public void rawDataDirectoryBeyondTheMaximumDepthIsReadEntirely() throws IOException, InterruptedException {
+        Global.IS_FOLDER_LIKE = true;
+        write("inst/TP1.d/acq.method", "inst/TP1.d/AcqData/MSScan.bin", "inst/TP1.d/AcqData/Sub/MSPeak.bin", "inst/project/TP2.d/acq.method");
+        Global.MAX_DEPTH = 1;
+        // the raw data directory is at depth 2, its content goes down to depth 4, the other directory at depth 2 is not read
+        assertEquals(Arrays.asList("inst/TP1.d/acq.method", "inst/TP1.d/AcqData/MSScan.bin", "inst/TP1.d/AcqData/Sub/MSPeak.bin"), scan());
+    }
+
+    @Test
+    public void excludedDirectoriesAreNotRead() throws IOException, InterruptedException {
+        write("inst1/Q1.raw", "inst1/Methods/Q2.raw", "inst2/Methods/Q3.raw", "inst2/tmp_1/Q4.raw", "inst2/tmp_1/sub/Q5.raw");
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>(Arrays.asList("glob:inst1/Methods", "regex:(.+/)?tmp_[0-9]+"));
+        assertEquals(Arrays.asList("inst1/Q1.raw", "inst2/Methods/Q3.raw"), scan());
+    }
+
+    @Test
+    public void exclusionsAreRelativeToTheScannedDirectory() throws IOException, InterruptedException {
+        write("inst1/Q1.raw", "inst1/project/Q2.raw");
+        // the scanned directory is not part of the relative paths, and is never excluded itself
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>(Arrays.asList("glob:raw/inst1", "raw"));
+        assertEquals(Arrays.asList("inst1/Q1.raw", "inst1/project/Q2.raw"), scan());
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>(Arrays.asList("glob:inst1/project"));
+        assertEquals(Arrays.asList("inst1/Q1.raw"), scan());
+        // a subdirectory scanned on its own gives paths relative to itself
+        assertEquals(Arrays.asList("Q1.raw", "project/Q2.raw"), scan(new File(rawDataDirectory, "inst1")));
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>(Arrays.asList("glob:project"));
+        assertEquals(Arrays.asList("Q1.raw"), scan(new File(rawDataDirectory, "inst1")));
+    }
+
+    @Test
+    public void rawFilesOutOfTheDateWindowAreNotSearched() throws IOException, InterruptedException {
+        write("inst/Q1.raw", "inst/Q2.raw");
+        setLastModified("inst/Q1.raw", "2020-06-01T12:00:00");
+        setLastModified("inst/Q2.raw", "2019-06-01T12:00:00");
+        setWindow("2020-01-01", "2020-12-31");
+        assertEquals(Arrays.asList("inst/Q1.raw"), scan());
+    }
+
+    @Test
+    public void rawDataDirectoryIsSearchedAsAWholeIfOneOfItsFilesIsInTheWindow() throws IOException, InterruptedException {
+        Global.IS_FOLDER_LIKE = true;
+        write("inst/TP1.d/acq.method", "inst/TP1.d/AcqData/MSScan.bin", "inst/TP2.d/acq.method");
+        setLastModified("inst/TP1.d/acq.method", "2019-06-01T12:00:00");
+        setLastModified("inst/TP1.d/AcqData/MSScan.bin", "2020-06-01T12:00:00");
+        setLastModified("inst/TP2.d/acq.method", "2019-06-01T12:00:00");
+        setWindow("2020-01-01", "2020-12-31");
+        // the file older than the window is still part of the raw data
+        assertEquals(Arrays.asList("inst/TP1.d/acq.method", "inst/TP1.d/AcqData/MSScan.bin"), scan());
+    }
+
+    @Test
+    public void rawDataDirectoryNotModifiedSinceTheStartOfTheWindowIsNotRead() throws IOException, InterruptedException {
+        Global.IS_FOLDER_LIKE = true;
+        write("inst/TP1.d/acq.method", "inst/TP2.d/acq.method");
+        setLastModified("inst/TP1.d/acq.method", "2020-06-01T12:00:00");
+        setLastModified("inst/TP2.d/acq.method", "2020-06-01T12:00:00");
+        // the raw data are written once, so a directory older than the window is not even listed
+        setLastModified("inst/TP2.d", "2019-06-01T12:00:00");
+        setWindow("2020-01-01", "2020-12-31");
+        assertEquals(Arrays.asList("inst/TP1.d/acq.method"), scan());
+    }
+
+    private static void setWindow(String firstDay, String lastDay) {
+        Global.DATE_WINDOW_TYPE = DateWindow.Type.MODIFICATION.toString();
+        Global.DATE_WINDOW_START = firstDay;
+        Global.DATE_WINDOW_END = lastDay;
+    }
+
+    private void setLastModified(String path, String dateTime) throws IOException {
+        Files.setLastModifiedTime(new File(rawDataDirectory, path).toPath(), FileTime.from(LocalDateTime.parse(dateTime).atZone(ZoneId.systemDefault()).toInstant()));
+    }
+
+    private void write(String... paths) throws IOException {
+        for(String path : paths) {
+            File file = new File(rawDataDirectory, path);
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), new byte[10]);
+        }
+    }
+
+    private List<String> scan() throws InterruptedException {
+        return scan(rawDataDirectory);
+    }
+
+    /**
+     * @return the paths of the raw files found, relative to the scanned directory with '/' as separator
+     */
+    private static List<String> scan(File directory) throws InterruptedException {
+        DataParser parser = new DataParser(directory);
+        parser.start();
+        List<String> paths = new ArrayList<>();
+        ResultStore results = parser.getResults();
+        for(int row : results.getSortedRows()) paths.add(directory.toPath().relativize(results.getFile(row).toPath()).toString().replace(File.separatorChar, '/'));
+        return paths;
+    }
+}
@@ -0,0 +1,98 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultStoreTest {
+
+    private File rawDataDirectory;
+    private File archiveDirectory;
+
+    @Before
+    public void setUp() {
+        rawDataDirectory = new File("/data/raw").getAbsoluteFile();
+        archiveDirectory = new File("/data/archives").getAbsoluteFile();
+    }
+
+    @Test
+    public void sortsByDirectoryThenByName() {
+        ResultStore results = new ResultStore(rawDataDirectory, archiveDirectory);
+        List<String> paths = Arrays.asList("inst/b/TP2.d/data.bin", "inst/a-b/Q1.raw", "inst/a/c/Q3.raw", "inst/a/Q2.raw", "inst/a/Q10.raw", "inst/Q0.raw");
+        for(String path : paths) add(results, path, null);
+        results.complete();
+
+        List<String> sortedPaths = new ArrayList<>();
+        for(int row : results.getSortedRows()) sortedPaths.add(rawDataDirectory.toPath().relativize(results.getFile(row).toPath()).toString().replace(File.separatorChar, '/'));
+        // the files of a directory come before its subdirectories, and the files of a subdirectory are kept together
+        assertEquals(Arrays.asList("inst/Q0.raw", "inst/a-b/Q1.raw", "inst/a/Q10.raw", "inst/a/Q2.raw", "inst/a/c/Q3.raw", "inst/b/TP2.d/data.bin"), sortedPaths);
+    }
+
+    @Test
+    public void pathsAreTheOnesOfTheFiles() {
+        ResultStore results = new ResultStore(rawDataDirectory, archiveDirectory);
+        File archiveMonthDirectory = new File(archiveDirectory, "2020/septembre");
+        add(results, "inst/TP1.d/data.bin", archiveMonthDirectory);
+        add(results, "Q1.raw", archiveMonthDirectory);
+        add(results, "Q2.raw", null);
+        results.complete();
+
+        for(int row = 0; row < results.size(); row++) {
+            assertEquals(results.getFile(row).getAbsolutePath(), results.getPath(row));
+            FileInfo archive = results.getArchiveInfo(row);
+            assertEquals(archive == null ? null : archive.getFile().getAbsolutePath(), results.getArchivePath(row));
+        }
+        assertEquals(new File(archiveMonthDirectory, "inst/TP1.d/data.bin").getAbsolutePath(), results.getArchivePath(0));
+        assertEquals(new File(archiveMonthDirectory, "Q1.raw").getAbsolutePath(), results.getArchivePath(1));
+        assertNull(results.getArchivePath(2));
+    }
+
+    @Test
+    public void rowsAddedBySeveralThreadsAreAllKept() throws InterruptedException {
+        ResultStore results = new ResultStore(rawDataDirectory, archiveDirectory);
+        int nbThreads = 4;
+        // more than one page of rows per thread
+        int nbRowsPerThread = 10000;
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < nbThreads; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for(int i = 0; i < nbRowsPerThread; i++) {
+                    FileInfo file = new FileInfo(new File(rawDataDirectory, "inst" + (i % 10) + "/Q" + thread + "_" + i + ".raw"), false, thread * nbRowsPerThread + i, 1600000000000L, 1600000001000L);
+                    results.add(file, null, new RawData(file.getName()));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for(Thread thread : threads) thread.join();
+        results.complete();
+
+        assertEquals(nbThreads * nbRowsPerThread, results.size());
+        boolean[] isFound = new boolean[results.size()];
+        for(int row = 0; row < results.size(); row++) {
+            // each file is found once, with its own values
+            int value = (int) results.getSize(row);
+            assertFalse(isFound[value]);
+            isFound[value] = true;
+            int thread = value / nbRowsPerThread;
+            int i = value % nbRowsPerThread;
+            assertEquals(new File(rawDataDirectory, "inst" + (i % 10) + "/Q" + thread + "_" + i + ".raw").getAbsoluteFile(), results.getFile(row));
+            assertEquals(results.getFile(row).getName(), results.getRawFileName(row));
+        }
+        assertEquals(results.size(), results.getSortedRows().length);
+    }
+
+    private void add(ResultStore results, String path, File archiveMonthDirectory) {
+        RawData rawData = new RawData(new File(path).getName(), 1000.0, new Date(1600000000000L), archiveMonthDirectory == null ? 0 : 1, 1, 0);
+        FileInfo file = new FileInfo(new File(rawDataDirectory, path), false, 1000, 1600000000000L, 1600000001000L);
+        FileInfo archive = archiveMonthDirectory == null ? null : new FileInfo(new File(archiveMonthDirectory, path), false, 1000, 1600000002000L, 1600000003000L);
+        results.add(file, archive, rawData);
+    }
+}
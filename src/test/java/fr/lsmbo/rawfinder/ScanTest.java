@@ -0,0 +1,66 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ScanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File rawDataDirectory;
+    private File archiveDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        rawDataDirectory = folder.newFolder("raw");
+        archiveDirectory = folder.newFolder("archives");
+        TestSettings.apply(rawDataDirectory, archiveDirectory, folder.newFolder("reports"));
+        File archiveMonthDirectory = new File(archiveDirectory, "2020/septembre");
+        for(String path : Arrays.asList("inst1/Qa.raw", "inst1/Qb.raw", "inst1/project/Qc.raw", "inst1/notes.txt", "inst2/Qd.raw")) {
+            write(new File(rawDataDirectory, path));
+        }
+        for(String path : Arrays.asList("inst1/Qa.raw", "inst2/Qd.raw")) write(new File(archiveMonthDirectory, path));
+    }
+
+    @Test
+    public void readsEachItemOnce() throws IOException, InterruptedException {
+        MemoryStorage storage = MemoryStorage.copyOf(rawDataDirectory, archiveDirectory);
+        DataParser parser = new DataParser(rawDataDirectory, storage);
+        parser.start();
+        assertTrue(parser.isComplete());
+        assertEquals(4, parser.getResults().size());
+
+        for(File item : storage.getItems()) {
+            if(!item.toPath().startsWith(rawDataDirectory.toPath())) continue;
+            boolean isDirectory = storage.read(item).isDirectory();
+            // the attributes of an item are given by the listing of its parent
+            long nbReads = storage.getNbAttributeReads(item) - 1;
+            if(item.equals(rawDataDirectory)) {
+                assertEquals(1, storage.getNbListings(item));
+                assertEquals(0, nbReads);
+            } else {
+                assertEquals(item.getPath(), isDirectory ? 1 : 0, storage.getNbListings(item));
+                assertEquals(item.getPath(), 1, nbReads);
+            }
+        }
+        // the archive directories are only listed once, whatever the number of files searched in them
+        for(File item : storage.getItems()) {
+            if(item.toPath().startsWith(archiveDirectory.toPath())) assertTrue(item.getPath(), storage.getNbListings(item) <= 1);
+        }
+    }
+
+    private static void write(File file) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), new byte[10]);
+    }
+}
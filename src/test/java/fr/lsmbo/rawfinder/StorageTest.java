@@ -0,0 +1,119 @@
+package fr.lsmbo.rawfinder;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(Parameterized.class)
+public class StorageTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> storages() {
+        List<Object[]> storages = new ArrayList<>();
+        storages.add(new Object[] { "local", LocalStorage.INSTANCE });
+        // only if this system has a native backend
+        if(NativeStorage.getInstance() != LocalStorage.INSTANCE) storages.add(new Object[] { "native", NativeStorage.getInstance() });
+        return storages;
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Storage storage;
+    private File rawDataDirectory;
+    private File directory;
+
+    public StorageTest(String name, Storage _storage) {
+        storage = _storage;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        rawDataDirectory = folder.newFolder("raw");
+        TestSettings.apply(rawDataDirectory, folder.newFolder("archives"), folder.newFolder("reports"));
+        directory = new File(rawDataDirectory, "inst");
+        Files.createDirectories(directory.toPath());
+        Files.write(new File(directory, "Qa.raw").toPath(), new byte[10]);
+        Files.write(new File(directory, "Qz.raw").toPath(), new byte[20]);
+    }
+
+    @Test
+    public void skipsDanglingLinks() throws IOException {
+        createLink("Qm_link.raw", "missing.raw");
+        List<String> names = new ArrayList<>();
+        List<IOException> errors = new ArrayList<>();
+        list(names, errors);
+
+        assertEquals(Arrays.asList("Qa.raw", "Qz.raw"), names);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void goesOnAfterAnUnreadableItem() throws IOException {
+        // the attributes of a link to itself can not be read
+        createLink("Qm_loop.raw", "Qm_loop.raw");
+        List<String> names = new ArrayList<>();
+        List<IOException> errors = new ArrayList<>();
+        list(names, errors);
+
+        assertEquals(Arrays.asList("Qa.raw", "Qz.raw"), names);
+        assertEquals(1, errors.size());
+    }
+
+    @Test
+    public void scanKeepsTheReadableItems() throws InterruptedException, IOException {
+        createLink("Qm_link.raw", "missing.raw");
+        createLink("Qm_loop.raw", "Qm_loop.raw");
+        DataParser parser = new DataParser(rawDataDirectory, storage);
+        parser.start();
+
+        List<String> names = new ArrayList<>();
+        ResultStore results = parser.getResults();
+        for(int row : results.getSortedRows()) names.add(results.getFile(row).getName());
+        assertEquals(Arrays.asList("Qa.raw", "Qz.raw"), names);
+    }
+
+    private void createLink(String name, String target) throws IOException {
+        try {
+            Files.createSymbolicLink(new File(directory, name).toPath(), new File(target).toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            // links need a specific privilege on Windows
+            assumeTrue("symbolic links can not be created here", false);
+        }
+    }
+
+    /**
+     * Lists the test directory, the names are sorted
+     */
+    private void list(List<String> names, List<IOException> errors) throws IOException {
+        try (DirectoryStream<FileInfo> stream = storage.list(directory)) {
+            Iterator<FileInfo> items = stream.iterator();
+            while(items.hasNext()) {
+                try {
+                    names.add(items.next().getName());
+                } catch (DirectoryIteratorException die) {
+                    errors.add(die.getCause());
+                }
+            }
+        }
+        Collections.sort(names);
+    }
+}
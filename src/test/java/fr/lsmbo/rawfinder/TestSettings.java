@@ -0,0 +1,38 @@
+package fr.lsmbo.rawfinder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Settings of the scans run by the tests, as if they had been read from the settings file
+ */
+class TestSettings {
+
+    /**
+     * File-like raw data (Q*.raw), a few threads, and none of the optional features
+     */
+    static void apply(File rawDataDirectory, File archiveDirectory, File reportsDirectory) {
+        Global.RAW_DATA_DIRECTORY = rawDataDirectory;
+        Global.RAW_DATA_ARCHIVES = archiveDirectory;
+        Global.REPORTS_DIRECTORY = reportsDirectory;
+        Global.IS_FOLDER_LIKE = false;
+        Global.FOLDER_LIKE_RAW_DATA_TEMPLATE = Collections.singletonList("TP.*\\.d");
+        Global.FILE_LIKE_RAW_DATA_TEMPLATE = Collections.singletonList("Q.*\\.raw");
+        Global.NB_THREADS = 4;
+        Global.NB_PROBE_THREADS = 2;
+        Global.NB_VERIFY_THREADS = 1;
+        Global.PIPELINE_QUEUE_SIZE = 2;
+        Global.ARCHIVE_CACHE_SIZE = 100;
+        Global.USE_ARCHIVE_INDEX = false;
+        Global.INCREMENTAL_SCAN = false;
+        Global.VERIFY_CHECKSUMS = false;
+        Global.USE_NATIVE_LISTING = false;
+        Global.EXCLUDED_DIRECTORIES = new ArrayList<>();
+        Global.MAX_DEPTH = 0;
+        Global.MAX_ROWS_PER_REPORT = 1000000;
+        Global.DATE_WINDOW_TYPE = "";
+        Global.DATE_WINDOW_START = "";
+        Global.DATE_WINDOW_END = "";
+    }
+}